@@ -1,5 +1,4 @@
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import edu.princeton.cs.algs4.StdDraw;
@@ -10,16 +9,12 @@ public class BruteCollinearPoints {
     private final List<LineSegment> segments = new ArrayList<>();
 
     public BruteCollinearPoints(Point[] points) {
-        checkPoints(points);
-        int n = points.length;
+        Point[] sortedPoints = CollinearInput.sortedCopy(points);
+        int n = sortedPoints.length;
         if (n < 4) {
             return;
         }
 
-        Point[] sortedPoints = new Point[n];
-        System.arraycopy(points, 0, sortedPoints, 0, n);
-        Arrays.sort(sortedPoints);
-
         for (int i = 0; i < n; i++) {
             for (int j = i + 1; j < n; j++) {
                 for (int k = j + 1; k < n; k++) {
@@ -37,24 +32,6 @@ public class BruteCollinearPoints {
         }
     }
 
-    private static void checkPoints(Point[] points) {
-        if (points == null) {
-            throw new IllegalArgumentException();
-        }
-        for (Point point : points) {
-            if (point == null) {
-                throw new IllegalArgumentException();
-            }
-        }
-        for (int i = 0; i < points.length; i++) {
-            for (int j = i + 1; j < points.length; j++) {
-                if (points[i].compareTo(points[j]) == 0) {
-                    throw new IllegalArgumentException();
-                }
-            }
-        }
-    }
-
     public int numberOfSegments() {
         return segments.size();
     }
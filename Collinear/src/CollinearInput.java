@@ -0,0 +1,33 @@
+import java.util.Arrays;
+
+/**
+ * Input validation shared by the collinear point detectors. Sorting first
+ * puts equal points next to each other, so duplicates are found in
+ * O(n log n), and the detectors reuse the sorted copy instead of sorting
+ * again.
+ */
+class CollinearInput {
+    private CollinearInput() {
+    }
+
+    // a copy of points in natural order; throws IllegalArgumentException if the
+    // array or any point is null, or if two points are equal
+    static Point[] sortedCopy(Point[] points) {
+        if (points == null) {
+            throw new IllegalArgumentException();
+        }
+        for (Point point : points) {
+            if (point == null) {
+                throw new IllegalArgumentException();
+            }
+        }
+        Point[] sorted = points.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i - 1].compareTo(sorted[i]) == 0) {
+                throw new IllegalArgumentException("duplicate point " + sorted[i]);
+            }
+        }
+        return sorted;
+    }
+}
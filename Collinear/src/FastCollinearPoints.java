@@ -1,85 +1,162 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import edu.princeton.cs.algs4.StdDraw;
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdOut;
 
 public class FastCollinearPoints {
+    private static final int GRAIN = 16;
     private final List<LineSegment> segments = new ArrayList<>();
-    private final int len;
 
     public FastCollinearPoints(Point[] points) {
-        checkPoints(points);
-        len = points.length;
+        this(points, false);
+    }
+
+    // parallel spreads the origins over the common fork/join pool; the
+    // segments come out in the same order either way
+    public FastCollinearPoints(Point[] points, boolean parallel) {
+        Point[] sortedPoints = CollinearInput.sortedCopy(points);
+        int len = sortedPoints.length;
         if (len < 4) {
             return;
         }
 
-        Point[] sortedPoints = new Point[len];
-        System.arraycopy(points, 0, sortedPoints, 0, len);
-        Arrays.sort(sortedPoints);
-
-        for (int i = 0; i < len; i++) {
-            if (i > len - 4) {
-                return;
+        // an origin with fewer than three points above it cannot start a segment
+        if (parallel) {
+            segments.addAll(ForkJoinPool.commonPool().invoke(new OriginTask(sortedPoints, 0, len - 3)));
+        } else {
+            Workspace workspace = new Workspace(len);
+            for (int i = 0; i <= len - 4; i++) {
+                findCollinearPoints(sortedPoints, i, workspace, segments);
             }
-            Point origin = sortedPoints[i];
-            Point[] slopeOrder = new Point[len];
-            System.arraycopy(sortedPoints, 0, slopeOrder, 0, len);
-            Arrays.sort(slopeOrder, origin.slopeOrder());
-            findCollinearPoints(origin, slopeOrder);
         }
     }
 
-    private static void checkPoints(Point[] points) {
-        if (points == null) {
-            throw new IllegalArgumentException();
-        }
-        for (Point point : points) {
-            if (point == null) {
-                throw new IllegalArgumentException();
-            }
+    // the segments starting at origins [lo, hi), in origin order; each leaf
+    // has its own workspace, and halves are joined left before right
+    private static class OriginTask extends RecursiveTask<List<LineSegment>> {
+        private static final long serialVersionUID = 1L;
+        private final Point[] points;
+        private final int lo;
+        private final int hi;
+
+        OriginTask(Point[] points, int lo, int hi) {
+            this.points = points;
+            this.lo = lo;
+            this.hi = hi;
         }
-        for (int i = 0; i < points.length; i++) {
-            for (int j = i + 1; j < points.length; j++) {
-                if (points[i].compareTo(points[j]) == 0) {
-                    throw new IllegalArgumentException();
+
+        @Override
+        protected List<LineSegment> compute() {
+            if (hi - lo <= GRAIN) {
+                List<LineSegment> result = new ArrayList<>();
+                Workspace workspace = new Workspace(points.length);
+                for (int i = lo; i < hi; i++) {
+                    findCollinearPoints(points, i, workspace, result);
                 }
+                return result;
             }
+            int mid = (lo + hi) >>> 1;
+            OriginTask left = new OriginTask(points, lo, mid);
+            OriginTask right = new OriginTask(points, mid, hi);
+            invokeAll(left, right);
+            List<LineSegment> result = left.join();
+            result.addAll(right.join());
+            return result;
         }
     }
 
-    private void findCollinearPoints(Point origin, Point[] slopeOrder) {
-        int count = 0;
-        double prevSlope = origin.slopeTo(slopeOrder[0]);
-
-        for (int i = 1; i < len; i++) {
-            double currSlope = origin.slopeTo(slopeOrder[i]);
-            if (prevSlope == currSlope) {
-                count += 1;
-            } else {
-                if (isCollinear(slopeOrder, i, count)) {
-                    segments.add(new LineSegment(origin, slopeOrder[i - 1]));
+    // scratch arrays for one origin at a time, reused across origins
+    static class Workspace {
+        private static final int RADIX = 256;
+        private static final int DIGITS = Long.BYTES;
+
+        private long[] keys;
+        private long[] keysAux;
+        private int[] order;
+        private int[] orderAux;
+        private final int[][] counts = new int[DIGITS][RADIX];
+
+        Workspace(int n) {
+            keys = new long[n];
+            keysAux = new long[n];
+            order = new int[n];
+            orderAux = new int[n];
+        }
+
+        // stable LSD radix sort of keys[0..m) by unsigned byte, carrying order
+        // along; all eight histograms come from one pass, and a byte that is
+        // the same in every key (the high bytes of dy, usually) costs nothing
+        void sort(int m) {
+            for (int[] count : counts) {
+                Arrays.fill(count, 0);
+            }
+            for (int i = 0; i < m; i++) {
+                long key = keys[i];
+                for (int d = 0; d < DIGITS; d++) {
+                    counts[d][(int) (key >>> (8 * d)) & (RADIX - 1)] += 1;
+                }
+            }
+            for (int d = 0; d < DIGITS; d++) {
+                int[] count = counts[d];
+                int shift = 8 * d;
+                if (count[(int) (keys[0] >>> shift) & (RADIX - 1)] == m) {
+                    continue;
+                }
+                int start = 0;
+                for (int r = 0; r < RADIX; r++) {
+                    int c = count[r];
+                    count[r] = start;
+                    start += c;
+                }
+                for (int i = 0; i < m; i++) {
+                    int slot = count[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+                    keysAux[slot] = keys[i];
+                    orderAux[slot] = order[i];
                 }
-                prevSlope = currSlope;
-                count = 1;
+                long[] tempKeys = keys;
+                keys = keysAux;
+                keysAux = tempKeys;
+                int[] tempOrder = order;
+                order = orderAux;
+                orderAux = tempOrder;
             }
         }
+    }
 
-        if (isCollinear(slopeOrder, len, count)) {
-            segments.add(new LineSegment(origin, slopeOrder[len - 1]));
+    // adds to out every maximal segment of four or more points whose smallest
+    // point is points[origin]; points must be in natural order and distinct
+    static void findCollinearPoints(Point[] points, int origin, Workspace workspace, List<LineSegment> out) {
+        Point start = points[origin];
+        int m = 0;
+        for (int j = 0; j < points.length; j++) {
+            if (j != origin) {
+                workspace.keys[m] = start.slopeKey(points[j]);
+                workspace.order[m] = j;
+                m += 1;
+            }
         }
-    }
+        workspace.sort(m);
 
-    private boolean isCollinear(Point[] points, int index, int count) {
-        if (count < 3) {
-            return false;
+        // equal keys are now adjacent, and the sort is stable, so each group
+        // lists its points in natural order
+        long[] keys = workspace.keys;
+        int[] order = workspace.order;
+        int i = 0;
+        while (i < m) {
+            int j = i + 1;
+            while (j < m && keys[j] == keys[i]) {
+                j += 1;
+            }
+            if (j - i >= 3 && order[i] > origin) {
+                out.add(new LineSegment(start, points[order[j - 1]]));
+            }
+            i = j;
         }
-        Point origin = points[0];
-        Point start = points[index - count];
-        return origin.compareTo(start) < 0;
     }
 
     public int numberOfSegments() {
@@ -0,0 +1,136 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.princeton.cs.algs4.StdDraw;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Finds the same maximal segments as FastCollinearPoints, but instead of
+ * sorting the other points for each origin it groups them by Point.slopeKey()
+ * in an open-addressing hash table, for expected O(n^2) time overall. The
+ * table is allocated once; a generation stamp per slot empties it between
+ * origins in O(1), so the inner loop allocates nothing.
+ */
+public class HashCollinearPoints {
+    private final List<LineSegment> segments = new ArrayList<>();
+
+    public HashCollinearPoints(Point[] points) {
+        Point[] sortedPoints = CollinearInput.sortedCopy(points);
+        int len = sortedPoints.length;
+        if (len < 4) {
+            return;
+        }
+
+        // an origin with fewer than three points above it cannot start a segment
+        SlopeTable table = new SlopeTable(len);
+        for (int i = 0; i <= len - 4; i++) {
+            findCollinearPoints(sortedPoints, i, table);
+        }
+    }
+
+    // points are visited in natural order, so the first point recorded under
+    // a key is the smallest on that line and the last is the largest
+    private void findCollinearPoints(Point[] points, int origin, SlopeTable table) {
+        Point start = points[origin];
+        table.clear();
+        for (int j = 0; j < points.length; j++) {
+            if (j != origin) {
+                table.add(start.slopeKey(points[j]), j);
+            }
+        }
+        for (int u = 0; u < table.used; u++) {
+            int slot = table.usedSlots[u];
+            if (table.count[slot] >= 3 && table.first[slot] > origin) {
+                segments.add(new LineSegment(start, points[table.last[slot]]));
+            }
+        }
+    }
+
+    // long key -> (count, first index, last index), with linear probing
+    private static class SlopeTable {
+        private final long[] keys;
+        private final int[] stamp;
+        private final int[] count;
+        private final int[] first;
+        private final int[] last;
+        private final int[] usedSlots;
+        private final int shift;
+        private int used;
+        private int generation;
+
+        // room for n keys at a load factor of at most 1/2
+        SlopeTable(int n) {
+            int capacity = Integer.highestOneBit(Math.max(2, n - 1)) << 2;
+            keys = new long[capacity];
+            stamp = new int[capacity];
+            count = new int[capacity];
+            first = new int[capacity];
+            last = new int[capacity];
+            usedSlots = new int[n];
+            shift = Long.numberOfLeadingZeros(capacity - 1);
+        }
+
+        void clear() {
+            generation += 1;
+            used = 0;
+        }
+
+        void add(long key, int index) {
+            int mask = keys.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+            while (stamp[slot] == generation) {
+                if (keys[slot] == key) {
+                    count[slot] += 1;
+                    last[slot] = index;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            stamp[slot] = generation;
+            keys[slot] = key;
+            count[slot] = 1;
+            first[slot] = index;
+            last[slot] = index;
+            usedSlots[used] = slot;
+            used += 1;
+        }
+    }
+
+    public int numberOfSegments() {
+        return segments.size();
+    }
+
+    public LineSegment[] segments() {
+        return segments.toArray(new LineSegment[numberOfSegments()]);
+    }
+
+    public static void main(String[] args) {
+        // read the n points from a file
+        In in = new In(args[0]);
+        int n = in.readInt();
+        Point[] points = new Point[n];
+        for (int i = 0; i < n; i++) {
+            int x = in.readInt();
+            int y = in.readInt();
+            points[i] = new Point(x, y);
+        }
+
+        // draw the points
+        StdDraw.enableDoubleBuffering();
+        StdDraw.setXscale(0, 32768);
+        StdDraw.setYscale(0, 32768);
+        for (Point p : points) {
+            p.draw();
+        }
+        StdDraw.show();
+
+        // print and draw the line segments
+        HashCollinearPoints collinear = new HashCollinearPoints(points);
+        for (LineSegment segment : collinear.segments()) {
+            StdOut.println(segment);
+            segment.draw();
+        }
+        StdDraw.show();
+    }
+}
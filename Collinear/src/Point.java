@@ -16,6 +16,8 @@ public class Point implements Comparable<Point> {
     private final int x;     // x-coordinate of this point
     private final int y;     // y-coordinate of this point
 
+    private static final int KEY_RANGE = 1 << 30;  // slopeKey() coordinate bound
+
     /**
      * Initializes a new point.
      * @param  x the <em>x</em>-coordinate of the point
@@ -88,6 +90,51 @@ public class Point implements Comparable<Point> {
         }
     }
 
+    /**
+     * Returns an exact key for the direction of the line through this point
+     * and the specified point: two points get the same key if and only if
+     * they lie on the same line through this point. The difference (dx, dy)
+     * is reduced by its greatest common divisor and flipped so that dy > 0,
+     * or dy = 0 and dx > 0, then packed as dy in the high 32 bits and dx in
+     * the low 32 bits. The key of a point with itself is 0.
+     *
+     * @param  that the other point
+     * @return the direction key between this point and the specified point
+     * @throws IllegalArgumentException if either point has a coordinate
+     *         outside [-2^30, 2^30), where the differences could overflow
+     */
+    public long slopeKey(Point that) {
+        checkKeyRange(this);
+        checkKeyRange(that);
+        int dx = that.x - this.x;
+        int dy = that.y - this.y;
+        if (dy < 0 || (dy == 0 && dx < 0)) {
+            dx = -dx;
+            dy = -dy;
+        }
+        int divisor = gcd(Math.abs(dx), dy);
+        if (divisor > 1) {
+            dx /= divisor;
+            dy /= divisor;
+        }
+        return ((long) dy << 32) | (dx & 0xffffffffL);
+    }
+
+    private static void checkKeyRange(Point p) {
+        if (p.x < -KEY_RANGE || p.x >= KEY_RANGE || p.y < -KEY_RANGE || p.y >= KEY_RANGE) {
+            throw new IllegalArgumentException("coordinates must lie in [-2^30, 2^30): " + p);
+        }
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+
     /**
      * Compares two points by y-coordinate, breaking ties by x-coordinate.
      * Formally, the invoking point (x0, y0) is less than the argument point
@@ -170,5 +217,12 @@ public class Point implements Comparable<Point> {
         Comparator<Point> slopeCompare = p1.slopeOrder();
         System.out.println(slopeCompare.compare(p2, p4));  // 1
         System.out.println(slopeCompare.compare(p3, p4));  // -1
+
+        // slope keys: equal exactly when collinear with p1
+        Point p6 = new Point(3, 5);
+        Point p7 = new Point(0, -1);
+        System.out.println(p1.slopeKey(p4) == p1.slopeKey(p6));  // true
+        System.out.println(p1.slopeKey(p4) == p1.slopeKey(p7));  // true
+        System.out.println(p1.slopeKey(p2) == p1.slopeKey(p3));  // false
     }
 }
@@ -0,0 +1,360 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A deque stored as a doubly linked list of fixed-size blocks. It grows and
+ * shrinks a block at a time, so no operation ever copies more than a constant
+ * amount and there is one object per BLOCK_SIZE items rather than one per item.
+ * One emptied block is kept as a spare, so a deque that hovers at a block
+ * boundary does not allocate on every crossing.
+ */
+public class ChunkedDeque<Item> implements Iterable<Item> {
+    private static final int BLOCK_SIZE = 1024;
+
+    private static class Block<Item> {
+        private final Item[] items = (Item[]) new Object[BLOCK_SIZE];
+        private Block<Item> prev;
+        private Block<Item> next;
+    }
+
+    // items occupy headBlock[head..] through tailBlock[..tail - 1]
+    private Block<Item> headBlock;
+    private Block<Item> tailBlock;
+    private int head;
+    private int tail;
+    private int size;
+    private Block<Item> spare;
+
+    // construct an empty deque
+    public ChunkedDeque() {
+        headBlock = new Block<>();
+        tailBlock = headBlock;
+        head = BLOCK_SIZE / 2;
+        tail = head;
+        size = 0;
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // return the number of items on the deque
+    public int size() {
+        return size;
+    }
+
+    private Block<Item> obtain() {
+        if (spare == null) {
+            return new Block<>();
+        }
+        Block<Item> block = spare;
+        spare = null;
+        return block;
+    }
+
+    // the block's slots are already all null
+    private void release(Block<Item> block) {
+        block.prev = null;
+        block.next = null;
+        spare = block;
+    }
+
+    // an empty deque restarts from the middle of its one block, so it can grow
+    // either way without linking a new block straight away
+    private void recentreIfEmpty() {
+        if (size == 0) {
+            head = BLOCK_SIZE / 2;
+            tail = head;
+        }
+    }
+
+    // add the item to the front
+    public void addFirst(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        if (head == 0) {
+            Block<Item> block = obtain();
+            block.next = headBlock;
+            headBlock.prev = block;
+            headBlock = block;
+            head = BLOCK_SIZE;
+        }
+        head -= 1;
+        headBlock.items[head] = item;
+        size += 1;
+    }
+
+    // add the item to the back
+    public void addLast(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        if (tail == BLOCK_SIZE) {
+            Block<Item> block = obtain();
+            block.prev = tailBlock;
+            tailBlock.next = block;
+            tailBlock = block;
+            tail = 0;
+        }
+        tailBlock.items[tail] = item;
+        tail += 1;
+        size += 1;
+    }
+
+    // add the items to the back, in order, copying a block at a time; nothing
+    // is added if any item is null
+    public void addAllLast(Item[] source) {
+        if (source == null) {
+            throw new IllegalArgumentException();
+        }
+        for (Item item : source) {
+            if (item == null) {
+                throw new IllegalArgumentException();
+            }
+        }
+        int copied = 0;
+        while (copied < source.length) {
+            if (tail == BLOCK_SIZE) {
+                Block<Item> block = obtain();
+                block.prev = tailBlock;
+                tailBlock.next = block;
+                tailBlock = block;
+                tail = 0;
+            }
+            int n = Math.min(source.length - copied, BLOCK_SIZE - tail);
+            System.arraycopy(source, copied, tailBlock.items, tail, n);
+            tail += n;
+            copied += n;
+        }
+        size += source.length;
+    }
+
+    // add the items to the back, in order; the items are copied out of source
+    // before any are added, so source may be this deque
+    public void addAllLast(Iterable<? extends Item> source) {
+        if (source == null) {
+            throw new IllegalArgumentException();
+        }
+        addAllLast((Item[]) Deque.arrayOf(source));
+    }
+
+    // the items from front to back, a block at a time
+    Object[] toArray() {
+        Object[] copy = new Object[size];
+        Block<Item> block = headBlock;
+        int index = head;
+        int copied = 0;
+        while (copied < size) {
+            if (index == BLOCK_SIZE) {
+                block = block.next;
+                index = 0;
+            }
+            int n = Math.min(size - copied, BLOCK_SIZE - index);
+            System.arraycopy(block.items, index, copy, copied, n);
+            index += n;
+            copied += n;
+        }
+        return copy;
+    }
+
+    // remove up to k items from the front into target[0..], in order, and
+    // return how many were moved
+    public int drainFirst(int k, Item[] target) {
+        if (k < 0 || target == null || target.length < k) {
+            throw new IllegalArgumentException();
+        }
+        int total = Math.min(k, size);
+        int moved = 0;
+        while (moved < total) {
+            int n = Math.min(total - moved, BLOCK_SIZE - head);
+            System.arraycopy(headBlock.items, head, target, moved, n);
+            Arrays.fill(headBlock.items, head, head + n, null);
+            head += n;
+            moved += n;
+            size -= n;
+            if (head == BLOCK_SIZE && headBlock != tailBlock) {
+                Block<Item> block = headBlock;
+                headBlock = block.next;
+                headBlock.prev = null;
+                release(block);
+                head = 0;
+            }
+        }
+        recentreIfEmpty();
+        return total;
+    }
+
+    // remove and return the item from the front
+    public Item removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        Item first = headBlock.items[head];
+        headBlock.items[head] = null;
+        head += 1;
+        size -= 1;
+        if (head == BLOCK_SIZE && headBlock != tailBlock) {
+            Block<Item> block = headBlock;
+            headBlock = block.next;
+            headBlock.prev = null;
+            release(block);
+            head = 0;
+        }
+        recentreIfEmpty();
+        return first;
+    }
+
+    // remove and return the item from the back
+    public Item removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        tail -= 1;
+        Item last = tailBlock.items[tail];
+        tailBlock.items[tail] = null;
+        size -= 1;
+        if (tail == 0 && tailBlock != headBlock) {
+            Block<Item> block = tailBlock;
+            tailBlock = block.prev;
+            tailBlock.next = null;
+            release(block);
+            tail = BLOCK_SIZE;
+        }
+        recentreIfEmpty();
+        return last;
+    }
+
+    // return an iterator over items in order from front to back
+    public Iterator<Item> iterator() {
+        return new ChunkedIterator();
+    }
+
+    private class ChunkedIterator implements Iterator<Item> {
+        private Block<Item> block;
+        private int index;
+        private int remaining;
+
+        public ChunkedIterator() {
+            block = headBlock;
+            index = head;
+            remaining = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Item next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (index == BLOCK_SIZE) {
+                block = block.next;
+                index = 0;
+            }
+            Item item = block.items[index];
+            index += 1;
+            remaining -= 1;
+            return item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // return a spliterator over items from front to back that splits into
+    // halves of known size; finding the middle walks one link per block
+    @Override
+    public Spliterator<Item> spliterator() {
+        return new ChunkedSpliterator(headBlock, head, size);
+    }
+
+    // covers count items starting at block[index]; the deque must not change while in use
+    private class ChunkedSpliterator implements Spliterator<Item> {
+        private Block<Item> block;
+        private int index;
+        private int count;
+
+        public ChunkedSpliterator(Block<Item> block, int index, int count) {
+            this.block = block;
+            this.index = index;
+            this.count = count;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            if (count == 0) {
+                return false;
+            }
+            if (index == BLOCK_SIZE) {
+                block = block.next;
+                index = 0;
+            }
+            action.accept(block.items[index]);
+            index += 1;
+            count -= 1;
+            return true;
+        }
+
+        @Override
+        public Spliterator<Item> trySplit() {
+            int half = count / 2;
+            if (half == 0) {
+                return null;
+            }
+            Spliterator<Item> prefix = new ChunkedSpliterator(block, index, half);
+            int skip = half;
+            while (skip >= BLOCK_SIZE - index) {
+                skip -= BLOCK_SIZE - index;
+                block = block.next;
+                index = 0;
+            }
+            index += skip;
+            count -= half;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return count;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    // unit testing
+    public static void main(String[] args) {
+        ChunkedDeque<String> deque = new ChunkedDeque<>();
+        for (int i = 0; i < 10; i++) {
+            deque.addFirst("A" + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            deque.addLast("B" + i);
+        }
+
+        for (String s : deque) {
+            System.out.print(s + " ");
+        }
+        System.out.println();
+        System.out.println("Size: " + deque.size());
+
+        for (int i = 0; i < 10; i++) {
+            System.out.print(deque.removeFirst() + " ");
+            System.out.print(deque.removeLast() + " ");
+        }
+        System.out.println();
+        System.out.println("Size: " + deque.size());
+    }
+}
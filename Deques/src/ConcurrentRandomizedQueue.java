@@ -0,0 +1,256 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+
+/**
+ * A randomized queue that many threads can enqueue to and dequeue from at once.
+ * Items are spread over independently locked stripes, each an array like
+ * RandomizedQueue's, and no operation writes state shared by all stripes.
+ * A dequeue locks one stripe at random and draws r uniformly below a shared
+ * bound on the stripe sizes: it takes item r if the stripe has more than r
+ * items and otherwise tries again. Each attempt is uniform over all items as
+ * long as the bound holds, which it does whenever the queue is quiescent;
+ * the bound is written only when a stripe outgrows it or when a run of misses
+ * shows it has gone slack.
+ */
+public class ConcurrentRandomizedQueue<Item> implements Iterable<Item> {
+    private static final int INIT_SIZE = 8;
+
+    private final Stripe<Item>[] stripes;
+    private final Supplier<? extends RandomGenerator> random;
+    // at least the size of every stripe whenever no operation is in flight
+    private final AtomicInteger bound;
+
+    private static class Stripe<Item> {
+        private Item[] items = (Item[]) new Object[INIT_SIZE];
+        private volatile int size;
+
+        void add(Item item) {
+            if (size == items.length) {
+                resize(items.length * 2);
+            }
+            items[size] = item;
+            size += 1;
+        }
+
+        Item remove(int index) {
+            int last = size - 1;
+            Item item = items[index];
+            items[index] = items[last];
+            items[last] = null;
+            size = last;
+            if (items.length > INIT_SIZE && size < items.length / 4) {
+                resize(items.length / 2);
+            }
+            return item;
+        }
+
+        private void resize(int capacity) {
+            Item[] temp = (Item[]) new Object[capacity];
+            System.arraycopy(items, 0, temp, 0, size);
+            items = temp;
+        }
+    }
+
+    // construct an empty queue with a stripe per two cores, using ThreadLocalRandom
+    public ConcurrentRandomizedQueue() {
+        this(2 * Runtime.getRuntime().availableProcessors(), ThreadLocalRandom::current);
+    }
+
+    // construct an empty queue with the given number of stripes; random is asked
+    // for a generator on every operation and must hand each thread one it may use
+    // without locking, such as ThreadLocalRandom::current or splitting(seed)
+    public ConcurrentRandomizedQueue(int stripes, Supplier<? extends RandomGenerator> random) {
+        if (stripes <= 0 || random == null) {
+            throw new IllegalArgumentException();
+        }
+        this.stripes = (Stripe<Item>[]) new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe<>();
+        }
+        this.random = random;
+        this.bound = new AtomicInteger(1);
+    }
+
+    // per-thread SplittableRandom streams, all split from one seed. The set of
+    // streams is fixed by the seed, but a thread gets the next split the first
+    // time it draws, so which thread gets which stream depends on scheduling;
+    // a run repeats exactly only if its threads first draw in a fixed order,
+    // as a single-threaded one does
+    public static Supplier<RandomGenerator> splitting(long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        ThreadLocal<SplittableRandom> local = ThreadLocal.withInitial(() -> {
+            synchronized (root) {
+                return root.split();
+            }
+        });
+        return local::get;
+    }
+
+    // is the randomized queue empty? (a snapshot, summed over the stripes)
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // return the number of items on the randomized queue (a snapshot, summed
+    // over the stripes)
+    public int size() {
+        int total = 0;
+        for (Stripe<Item> stripe : stripes) {
+            total += stripe.size;
+        }
+        return total;
+    }
+
+    // add the item
+    public void enqueue(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        Stripe<Item> stripe = stripes[random.get().nextInt(stripes.length)];
+        int n;
+        synchronized (stripe) {
+            stripe.add(item);
+            n = stripe.size;
+        }
+        raiseBound(n);
+    }
+
+    // lifts the bound past n with some slack, so a growing queue writes it rarely
+    private void raiseBound(int n) {
+        int current = bound.get();
+        while (n > current) {
+            if (bound.compareAndSet(current, n + (n >>> 1))) {
+                return;
+            }
+            current = bound.get();
+        }
+    }
+
+    // remove and return a random item
+    public Item dequeue() {
+        return take(true);
+    }
+
+    // return a random item (but do not remove it)
+    public Item sample() {
+        return take(false);
+    }
+
+    private Item take(boolean remove) {
+        RandomGenerator generator = random.get();
+        int misses = 0;
+        while (true) {
+            int limit = bound.get();
+            Stripe<Item> stripe = stripes[generator.nextInt(stripes.length)];
+            synchronized (stripe) {
+                int n = stripe.size;
+                if (n > limit) {
+                    // an enqueue has not raised the bound yet; the attempt
+                    // would favour this stripe, so raise it and draw again
+                    raiseBound(n);
+                    continue;
+                }
+                int r = generator.nextInt(limit);
+                if (r < n) {
+                    return remove ? stripe.remove(r) : stripe.items[r];
+                }
+            }
+            misses += 1;
+            if (misses == stripes.length) {
+                misses = 0;
+                tightenBound();
+            }
+        }
+    }
+
+    // after a run of misses, resets the bound to the largest stripe; this is
+    // the only place an operation reads every stripe
+    private void tightenBound() {
+        int largest = 0;
+        for (Stripe<Item> stripe : stripes) {
+            largest = Math.max(largest, stripe.size);
+        }
+        if (largest == 0) {
+            throw new NoSuchElementException();
+        }
+        bound.set(largest);
+    }
+
+    // return an iterator over a snapshot of the items in random order; the
+    // iterator draws as it goes, so it gets a generator of its own, seeded from
+    // this thread's, and may be handed to another thread
+    public Iterator<Item> iterator() {
+        RandomGenerator own = new SplittableRandom(random.get().nextLong());
+        RandomizedQueue<Item> snapshot = new RandomizedQueue<>(own);
+        for (Stripe<Item> stripe : stripes) {
+            synchronized (stripe) {
+                for (int i = 0; i < stripe.size; i++) {
+                    snapshot.enqueue(stripe.items[i]);
+                }
+            }
+        }
+        return snapshot.iterator();
+    }
+
+    // unit testing: producers and consumers share one queue, and every item
+    // must be dequeued exactly once
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 250_000;
+        ConcurrentRandomizedQueue<Integer> queue = new ConcurrentRandomizedQueue<>(8, splitting(1));
+        int total = threads * perThread;
+        AtomicInteger[] seen = new AtomicInteger[total];
+        for (int i = 0; i < total; i++) {
+            seen[i] = new AtomicInteger();
+        }
+        AtomicInteger consumed = new AtomicInteger();
+
+        Thread[] workers = new Thread[2 * threads];
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    queue.enqueue(base + i);
+                }
+            });
+            workers[threads + t] = new Thread(() -> {
+                while (consumed.get() < total) {
+                    try {
+                        seen[queue.dequeue()].incrementAndGet();
+                        consumed.incrementAndGet();
+                    } catch (NoSuchElementException e) {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (int i = 0; i < total; i++) {
+            if (seen[i].get() != 1) {
+                throw new AssertionError("item " + i + " dequeued " + seen[i].get() + " times");
+            }
+        }
+        System.out.println(total + " items, each dequeued once, size now " + queue.size());
+
+        // the first dequeue from a quiet queue is uniform over its items
+        int[] counts = new int[10];
+        for (int trial = 0; trial < 100_000; trial++) {
+            ConcurrentRandomizedQueue<Integer> small = new ConcurrentRandomizedQueue<>();
+            for (int i = 0; i < counts.length; i++) {
+                small.enqueue(i);
+            }
+            counts[small.dequeue()] += 1;
+        }
+        System.out.println(java.util.Arrays.toString(counts));
+    }
+}
@@ -1,27 +1,23 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
 
 public class Deque<Item> implements Iterable<Item> {
-    private final Node sentinel;
+    private static final int INIT_SIZE = 8;
+    private Item[] items;
+    private int head;
     private int size;
 
-    private class Node {
-        Item item;
-        Node prev;
-        Node next;
-
-        public Node(Item item, Node prev, Node next) {
-            this.item = item;
-            this.prev = prev;
-            this.next = next;
-        }
-    }
-
     // construct an empty deque
     public Deque() {
-        sentinel = new Node(null, null, null);
-        sentinel.prev = sentinel;
-        sentinel.next = sentinel;
+        items = (Item[]) new Object[INIT_SIZE];
+        head = 0;
         size = 0;
     }
 
@@ -35,14 +31,48 @@ public class Deque<Item> implements Iterable<Item> {
         return size;
     }
 
+    // the capacity is always a power of two, so positions wrap with a mask
+    private int slot(int position) {
+        return (head + position) & (items.length - 1);
+    }
+
+    // copies the items to the front of a new array of the given capacity
+    private void resize(int capacity) {
+        Item[] temp = (Item[]) new Object[capacity];
+        int first = Math.min(size, items.length - head);
+        System.arraycopy(items, head, temp, 0, first);
+        System.arraycopy(items, 0, temp, first, size - first);
+        items = temp;
+        head = 0;
+    }
+
+    private void shrinkIfSparse() {
+        if (items.length > INIT_SIZE && size < items.length / 4) {
+            resize(items.length / 2);
+        }
+    }
+
+    // one resize to the smallest capacity the halving rule would settle on
+    private void shrinkToFit() {
+        int capacity = items.length;
+        while (capacity > INIT_SIZE && size < capacity / 4) {
+            capacity /= 2;
+        }
+        if (capacity != items.length) {
+            resize(capacity);
+        }
+    }
+
     // add the item to the front
     public void addFirst(Item item) {
         if (item == null) {
             throw new IllegalArgumentException();
         }
-        Node node = new Node(item, sentinel, sentinel.next);
-        sentinel.next.prev = node;
-        sentinel.next = node;
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
         size += 1;
     }
 
@@ -51,21 +81,107 @@ public class Deque<Item> implements Iterable<Item> {
         if (item == null) {
             throw new IllegalArgumentException();
         }
-        Node node = new Node(item, sentinel.prev, sentinel);
-        sentinel.prev.next = node;
-        sentinel.prev = node;
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        items[slot(size)] = item;
         size += 1;
     }
 
+    // add the items to the back, in order, with one capacity check and at most
+    // two array copies; nothing is added if any item is null
+    public void addAllLast(Item[] source) {
+        if (source == null) {
+            throw new IllegalArgumentException();
+        }
+        for (Item item : source) {
+            if (item == null) {
+                throw new IllegalArgumentException();
+            }
+        }
+        int n = source.length;
+        if (size + n > items.length) {
+            int capacity = items.length;
+            while (capacity < size + n) {
+                capacity *= 2;
+            }
+            resize(capacity);
+        }
+        int start = slot(size);
+        int first = Math.min(n, items.length - start);
+        System.arraycopy(source, 0, items, start, first);
+        System.arraycopy(source, first, items, 0, n - first);
+        size += n;
+    }
+
+    // add the items to the back, in order; the items are copied out of source
+    // before any are added, so source may be this deque
+    public void addAllLast(Iterable<? extends Item> source) {
+        if (source == null) {
+            throw new IllegalArgumentException();
+        }
+        addAllLast((Item[]) arrayOf(source));
+    }
+
+    // the items of source in iteration order; collections and this package's
+    // containers are copied in bulk, anything else one item at a time
+    static Object[] arrayOf(Iterable<?> source) {
+        if (source instanceof Deque) {
+            return ((Deque<?>) source).toArray();
+        }
+        if (source instanceof ChunkedDeque) {
+            return ((ChunkedDeque<?>) source).toArray();
+        }
+        if (source instanceof RandomizedQueue) {
+            return ((RandomizedQueue<?>) source).toArray();
+        }
+        if (source instanceof Collection) {
+            return ((Collection<?>) source).toArray();
+        }
+        List<Object> items = new ArrayList<>();
+        for (Object item : source) {
+            items.add(item);
+        }
+        return items.toArray();
+    }
+
+    // the items from front to back, in at most two copies
+    Object[] toArray() {
+        Object[] copy = new Object[size];
+        int first = Math.min(size, items.length - head);
+        System.arraycopy(items, head, copy, 0, first);
+        System.arraycopy(items, 0, copy, first, size - first);
+        return copy;
+    }
+
+    // remove up to k items from the front into target[0..], in order, and
+    // return how many were moved
+    public int drainFirst(int k, Item[] target) {
+        if (k < 0 || target == null || target.length < k) {
+            throw new IllegalArgumentException();
+        }
+        int n = Math.min(k, size);
+        int first = Math.min(n, items.length - head);
+        System.arraycopy(items, head, target, 0, first);
+        System.arraycopy(items, 0, target, first, n - first);
+        Arrays.fill(items, head, head + first, null);
+        Arrays.fill(items, 0, n - first, null);
+        head = (head + n) & (items.length - 1);
+        size -= n;
+        shrinkToFit();
+        return n;
+    }
+
     // remove and return the item from the front
     public Item removeFirst() {
         if (size == 0) {
             throw new NoSuchElementException();
         }
-        Item first = sentinel.next.item;
-        sentinel.next = sentinel.next.next;
-        sentinel.next.prev = sentinel;
+        Item first = items[head];
+        items[head] = null;
+        head = (head + 1) & (items.length - 1);
         size -= 1;
+        shrinkIfSparse();
         return first;
     }
 
@@ -74,10 +190,11 @@ public class Deque<Item> implements Iterable<Item> {
         if (size == 0) {
             throw new NoSuchElementException();
         }
-        Item last = sentinel.prev.item;
-        sentinel.prev = sentinel.prev.prev;
-        sentinel.prev.next = sentinel;
+        int tail = slot(size - 1);
+        Item last = items[tail];
+        items[tail] = null;
         size -= 1;
+        shrinkIfSparse();
         return last;
     }
 
@@ -87,11 +204,9 @@ public class Deque<Item> implements Iterable<Item> {
     }
 
     private class DequeIterator implements Iterator<Item> {
-        private Node current;
         private int position;
 
         public DequeIterator() {
-            current = sentinel.next;
             position = 0;
         }
 
@@ -105,8 +220,7 @@ public class Deque<Item> implements Iterable<Item> {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            Item item = current.item;
-            current = current.next;
+            Item item = items[slot(position)];
             position += 1;
             return item;
         }
@@ -117,6 +231,62 @@ public class Deque<Item> implements Iterable<Item> {
         }
     }
 
+    // return a spliterator over items from front to back that splits the ring
+    // into halves of known size, so parallel streams divide the work evenly
+    @Override
+    public Spliterator<Item> spliterator() {
+        return new DequeSpliterator(0, size);
+    }
+
+    // covers positions [position, end); the deque must not change while in use
+    private class DequeSpliterator implements Spliterator<Item> {
+        private int position;
+        private final int end;
+
+        public DequeSpliterator(int position, int end) {
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            if (position >= end) {
+                return false;
+            }
+            action.accept(items[slot(position)]);
+            position += 1;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Item> action) {
+            for (; position < end; position++) {
+                action.accept(items[slot(position)]);
+            }
+        }
+
+        @Override
+        public Spliterator<Item> trySplit() {
+            int middle = (position + end) >>> 1;
+            if (middle <= position) {
+                return null;
+            }
+            Spliterator<Item> prefix = new DequeSpliterator(position, middle);
+            position = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
     // unit testing (required)
     public static void main(String[] args) {
         Deque<String> deque = new Deque<>();
@@ -139,5 +309,18 @@ public class Deque<Item> implements Iterable<Item> {
         }
         System.out.println();
         System.out.println("Size: " + deque.size());
+
+        // parallel stream
+        Deque<Integer> numbers = new Deque<>();
+        for (int i = 1; i <= 1000; i++) {
+            numbers.addFirst(i);
+        }
+        System.out.println("Sum: " + StreamSupport.stream(numbers.spliterator(), true).mapToLong(i -> i).sum());
+
+        // bulk transfer
+        Integer[] batch = new Integer[300];
+        int moved = numbers.drainFirst(batch.length, batch);
+        numbers.addAllLast(batch);
+        System.out.println("Moved " + moved + ", front " + numbers.removeFirst() + ", back " + numbers.removeLast());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,351 @@
+/******************************************************************************
+ *  Compilation:  javac DequeBenchmark.java
+ *  Execution:    java DequeBenchmark [n] [thieves]
+ *  Dependencies: Deque.java ChunkedDeque.java WorkStealingDeque.java
+ *
+ *  Times Deque and ChunkedDeque against java.util.ArrayDeque (array ring) and
+ *  java.util.LinkedList (doubly linked nodes) on n items:
+ *    - queue     addLast n items, then removeFirst them all
+ *    - stack     addFirst n items, then removeFirst them all
+ *    - iterate   one pass over a deque of n items
+ *    - window    n rounds of addLast + removeFirst on a deque holding 1024
+ *                items, the shape of a work queue in steady state
+ *  Results are the best of several rounds, in nanoseconds per item.
+ *
+ *  It then runs a work-stealing workload under contention: an owner thread
+ *  pushes batches of items and pops them back while thief threads steal
+ *  from the other end, comparing WorkStealingDeque with a Deque guarded
+ *  by a lock. Results are items taken per microsecond, across all threads.
+ *
+ ******************************************************************************/
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DequeBenchmark {
+    private static final int ROUNDS = 7;
+    private static final int WINDOW = 1024;
+    private static final int BATCH = 64;
+    private static final long CONTENTION_MILLIS = 2000;
+
+    private static long sink;
+
+    // the four operations the workloads need, over each implementation
+    private interface Ops {
+        void addFirst(Integer item);
+
+        void addLast(Integer item);
+
+        Integer removeFirst();
+
+        long sum();
+    }
+
+    private interface Factory {
+        Ops create();
+    }
+
+    private static Ops deque() {
+        Deque<Integer> deque = new Deque<>();
+        return new Ops() {
+            @Override
+            public void addFirst(Integer item) {
+                deque.addFirst(item);
+            }
+
+            @Override
+            public void addLast(Integer item) {
+                deque.addLast(item);
+            }
+
+            @Override
+            public Integer removeFirst() {
+                return deque.removeFirst();
+            }
+
+            @Override
+            public long sum() {
+                long sum = 0;
+                for (Integer item : deque) {
+                    sum += item;
+                }
+                return sum;
+            }
+        };
+    }
+
+    private static Ops chunkedDeque() {
+        ChunkedDeque<Integer> deque = new ChunkedDeque<>();
+        return new Ops() {
+            @Override
+            public void addFirst(Integer item) {
+                deque.addFirst(item);
+            }
+
+            @Override
+            public void addLast(Integer item) {
+                deque.addLast(item);
+            }
+
+            @Override
+            public Integer removeFirst() {
+                return deque.removeFirst();
+            }
+
+            @Override
+            public long sum() {
+                long sum = 0;
+                for (Integer item : deque) {
+                    sum += item;
+                }
+                return sum;
+            }
+        };
+    }
+
+    private static Ops arrayDeque() {
+        ArrayDeque<Integer> deque = new ArrayDeque<>();
+        return new Ops() {
+            @Override
+            public void addFirst(Integer item) {
+                deque.addFirst(item);
+            }
+
+            @Override
+            public void addLast(Integer item) {
+                deque.addLast(item);
+            }
+
+            @Override
+            public Integer removeFirst() {
+                return deque.removeFirst();
+            }
+
+            @Override
+            public long sum() {
+                long sum = 0;
+                for (Integer item : deque) {
+                    sum += item;
+                }
+                return sum;
+            }
+        };
+    }
+
+    private static Ops linkedList() {
+        LinkedList<Integer> deque = new LinkedList<>();
+        return new Ops() {
+            @Override
+            public void addFirst(Integer item) {
+                deque.addFirst(item);
+            }
+
+            @Override
+            public void addLast(Integer item) {
+                deque.addLast(item);
+            }
+
+            @Override
+            public Integer removeFirst() {
+                return deque.removeFirst();
+            }
+
+            @Override
+            public long sum() {
+                long sum = 0;
+                for (Integer item : deque) {
+                    sum += item;
+                }
+                return sum;
+            }
+        };
+    }
+
+    private static double queue(Factory factory, Integer[] items) {
+        Ops ops = factory.create();
+        long start = System.nanoTime();
+        for (Integer item : items) {
+            ops.addLast(item);
+        }
+        for (int i = 0; i < items.length; i++) {
+            sink += ops.removeFirst();
+        }
+        return (double) (System.nanoTime() - start) / items.length;
+    }
+
+    private static double stack(Factory factory, Integer[] items) {
+        Ops ops = factory.create();
+        long start = System.nanoTime();
+        for (Integer item : items) {
+            ops.addFirst(item);
+        }
+        for (int i = 0; i < items.length; i++) {
+            sink += ops.removeFirst();
+        }
+        return (double) (System.nanoTime() - start) / items.length;
+    }
+
+    private static double iterate(Factory factory, Integer[] items) {
+        Ops ops = factory.create();
+        for (Integer item : items) {
+            ops.addLast(item);
+        }
+        long start = System.nanoTime();
+        sink += ops.sum();
+        return (double) (System.nanoTime() - start) / items.length;
+    }
+
+    private static double window(Factory factory, Integer[] items) {
+        Ops ops = factory.create();
+        for (int i = 0; i < WINDOW; i++) {
+            ops.addLast(items[i]);
+        }
+        long start = System.nanoTime();
+        for (Integer item : items) {
+            ops.addLast(item);
+            sink += ops.removeFirst();
+        }
+        return (double) (System.nanoTime() - start) / items.length;
+    }
+
+    private interface Workload {
+        double run(Factory factory, Integer[] items);
+    }
+
+    private static double best(Workload workload, Factory factory, Integer[] items) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < ROUNDS; i++) {
+            best = Math.min(best, workload.run(factory, items));
+        }
+        return best;
+    }
+
+    private static void report(String name, Factory factory, Integer[] items) {
+        System.out.printf("%-12s %10.2f %10.2f %10.2f %10.2f%n", name,
+                best(DequeBenchmark::queue, factory, items),
+                best(DequeBenchmark::stack, factory, items),
+                best(DequeBenchmark::iterate, factory, items),
+                best(DequeBenchmark::window, factory, items));
+    }
+
+    // owner and thief sides of a deque shared between threads; both return
+    // null when there is nothing to take
+    private interface Shared {
+        void push(Integer item);
+
+        Integer pop();
+
+        Integer steal();
+    }
+
+    private static Shared workStealing() {
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        return new Shared() {
+            @Override
+            public void push(Integer item) {
+                deque.addFirst(item);
+            }
+
+            @Override
+            public Integer pop() {
+                if (deque.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return deque.removeFirst();
+                } catch (NoSuchElementException e) {
+                    return null;
+                }
+            }
+
+            @Override
+            public Integer steal() {
+                return deque.steal();
+            }
+        };
+    }
+
+    private static Shared locked() {
+        Deque<Integer> deque = new Deque<>();
+        return new Shared() {
+            @Override
+            public synchronized void push(Integer item) {
+                deque.addFirst(item);
+            }
+
+            @Override
+            public synchronized Integer pop() {
+                return deque.isEmpty() ? null : deque.removeFirst();
+            }
+
+            @Override
+            public synchronized Integer steal() {
+                return deque.isEmpty() ? null : deque.removeLast();
+            }
+        };
+    }
+
+    // items taken per microsecond by the owner and thieves together
+    private static double contention(Shared deque, int thieves, Integer[] items) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong stolen = new AtomicLong();
+        Thread[] threads = new Thread[thieves];
+        for (int i = 0; i < thieves; i++) {
+            threads[i] = new Thread(() -> {
+                long count = 0;
+                while (running.get()) {
+                    if (deque.steal() != null) {
+                        count += 1;
+                    }
+                }
+                stolen.addAndGet(count);
+            });
+            threads[i].start();
+        }
+
+        long popped = 0;
+        int next = 0;
+        long start = System.nanoTime();
+        long deadline = start + CONTENTION_MILLIS * 1_000_000;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < BATCH; i++) {
+                deque.push(items[next]);
+                next = (next + 1) % items.length;
+            }
+            while (deque.pop() != null) {
+                popped += 1;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (popped + stolen.get()) / (elapsed / 1e3);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 22;
+        Integer[] items = new Integer[Math.max(n, WINDOW)];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = i;
+        }
+
+        System.out.printf("%-12s %10s %10s %10s %10s   (ns per item, n = %d)%n",
+                "", "queue", "stack", "iterate", "window", items.length);
+        report("Deque", DequeBenchmark::deque, items);
+        report("ChunkedDeque", DequeBenchmark::chunkedDeque, items);
+        report("ArrayDeque", DequeBenchmark::arrayDeque, items);
+        report("LinkedList", DequeBenchmark::linkedList, items);
+
+        int thieves = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        System.out.printf("%nowner + %d thieves, batches of %d   (items per us)%n", thieves, BATCH);
+        System.out.printf("%-18s %10.2f%n", "WorkStealingDeque", contention(workStealing(), thieves, items));
+        System.out.printf("%-18s %10.2f%n", "locked Deque", contention(locked(), thieves, items));
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+}
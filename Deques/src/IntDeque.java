@@ -0,0 +1,147 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class IntDeque implements Iterable<Integer> {
+    private static final int INIT_SIZE = 8;
+    private int[] items;
+    private int head;
+    private int size;
+
+    // construct an empty deque
+    public IntDeque() {
+        items = new int[INIT_SIZE];
+        head = 0;
+        size = 0;
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // return the number of items on the deque
+    public int size() {
+        return size;
+    }
+
+    // the capacity is always a power of two, so positions wrap with a mask
+    private int slot(int position) {
+        return (head + position) & (items.length - 1);
+    }
+
+    // copies the items to the front of a new array of the given capacity
+    private void resize(int capacity) {
+        int[] temp = new int[capacity];
+        int first = Math.min(size, items.length - head);
+        System.arraycopy(items, head, temp, 0, first);
+        System.arraycopy(items, 0, temp, first, size - first);
+        items = temp;
+        head = 0;
+    }
+
+    private void shrinkIfSparse() {
+        if (items.length > INIT_SIZE && size < items.length / 4) {
+            resize(items.length / 2);
+        }
+    }
+
+    // add the item to the front
+    public void addFirst(int item) {
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        size += 1;
+    }
+
+    // add the item to the back
+    public void addLast(int item) {
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        items[slot(size)] = item;
+        size += 1;
+    }
+
+    // remove and return the item from the front
+    public int removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int first = items[head];
+        head = (head + 1) & (items.length - 1);
+        size -= 1;
+        shrinkIfSparse();
+        return first;
+    }
+
+    // remove and return the item from the back
+    public int removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int last = items[slot(size - 1)];
+        size -= 1;
+        shrinkIfSparse();
+        return last;
+    }
+
+    // return an iterator over items in order from front to back; nextInt() does not box
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntDequeIterator();
+    }
+
+    private class IntDequeIterator implements PrimitiveIterator.OfInt {
+        private int position;
+
+        public IntDequeIterator() {
+            position = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < size;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int item = items[slot(position)];
+            position += 1;
+            return item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // unit testing
+    public static void main(String[] args) {
+        IntDeque deque = new IntDeque();
+        for (int i = 0; i < 10; i++) {
+            deque.addFirst(i);
+        }
+        for (int i = 0; i < 10; i++) {
+            deque.addLast(100 + i);
+        }
+
+        PrimitiveIterator.OfInt iterator = deque.iterator();
+        while (iterator.hasNext()) {
+            System.out.print(iterator.nextInt() + " ");
+        }
+        System.out.println();
+        System.out.println("Size: " + deque.size());
+
+        for (int i = 0; i < 10; i++) {
+            System.out.print(deque.removeFirst() + " ");
+            System.out.print(deque.removeLast() + " ");
+        }
+        System.out.println();
+        System.out.println("Size: " + deque.size());
+    }
+}
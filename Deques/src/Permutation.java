@@ -1,19 +1,98 @@
-import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 public class Permutation {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         if (args.length != 1) {
             System.out.println("Usage: java Permutation number");
+            return;
+        }
+        int k = Integer.parseInt(args[0]);
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be non-negative: " + k);
         }
 
+        // reservoir sampling: after the i-th token the queue holds a uniformly
+        // random k-subset of the first i, so memory is O(k) however long the input
         RandomizedQueue<String> queue = new RandomizedQueue<>();
-        while (!StdIn.isEmpty()) {
-            queue.enqueue(StdIn.readString());
+        if (k > 0) {
+            Tokens tokens = new Tokens(System.in);
+            long count = 0;
+            for (String token = tokens.next(); token != null; token = tokens.next()) {
+                count += 1;
+                if (count <= k) {
+                    queue.enqueue(token);
+                } else if (StdRandom.uniformLong(count) < k) {
+                    queue.dequeue();
+                    queue.enqueue(token);
+                }
+            }
         }
 
-        int k = Integer.parseInt(args[0]);
-        for (int i = 0; i < k; i++) {
-            System.out.println(queue.dequeue());
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        while (!queue.isEmpty()) {
+            out.write(queue.dequeue());
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    // whitespace-separated UTF-8 tokens read straight from a byte stream; every
+    // byte of a multi-byte UTF-8 sequence is >= 0x80, so splitting on ASCII
+    // whitespace never cuts a character in half
+    private static class Tokens {
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position;
+        private int limit;
+        private byte[] token = new byte[64];
+
+        Tokens(InputStream in) {
+            this.in = in;
+        }
+
+        // the next byte, or -1 at the end of the input
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        private static boolean isWhitespace(int b) {
+            return b == ' ' || (b >= '\t' && b <= '\r');
+        }
+
+        // the next token, or null at the end of the input
+        String next() throws IOException {
+            int b = read();
+            while (b != -1 && isWhitespace(b)) {
+                b = read();
+            }
+            if (b == -1) {
+                return null;
+            }
+            int length = 0;
+            while (b != -1 && !isWhitespace(b)) {
+                if (length == token.length) {
+                    token = Arrays.copyOf(token, length * 2);
+                }
+                token[length++] = (byte) b;
+                b = read();
+            }
+            return new String(token, 0, length, StandardCharsets.UTF_8);
         }
     }
 }
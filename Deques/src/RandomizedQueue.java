@@ -1,19 +1,45 @@
 import edu.princeton.cs.algs4.StdRandom;
 
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.random.RandomGenerator;
 
 public class RandomizedQueue<Item> implements Iterable<Item> {
     private static final int INIT_SIZE = 8;
     private Item[] items;
     private int size;
     private int arraySize;
+    private int modifications;
+    private final RandomGenerator random;
 
     // construct an empty randomized queue
     public RandomizedQueue() {
         this.items = (Item[]) new Object[INIT_SIZE];
         this.size = 0;
         this.arraySize = INIT_SIZE;
+        this.random = null;
+    }
+
+    // construct an empty randomized queue drawing from random instead of
+    // StdRandom, e.g. a SplittableRandom owned by the calling thread
+    public RandomizedQueue(RandomGenerator random) {
+        if (random == null) {
+            throw new IllegalArgumentException();
+        }
+        this.items = (Item[]) new Object[INIT_SIZE];
+        this.size = 0;
+        this.arraySize = INIT_SIZE;
+        this.random = random;
+    }
+
+    // uniform in [0, n), from StdRandom unless a generator was supplied
+    private int uniform(int n) {
+        return random == null ? StdRandom.uniformInt(n) : random.nextInt(n);
     }
 
     // is the randomized queue empty?
@@ -43,6 +69,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         }
         items[size] = item;
         size += 1;
+        modifications += 1;
     }
 
     // remove and return a random item
@@ -50,12 +77,13 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        int index = StdRandom.uniformInt(size);
+        int index = uniform(size);
         int last = size - 1;
         Item item = items[index];
         items[index] = items[last];
         items[last] = null;
         size -= 1;
+        modifications += 1;
         if (arraySize > INIT_SIZE && size < 0.25 * arraySize) {
             resize(arraySize / 2);
         }
@@ -67,29 +95,126 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        int index = StdRandom.uniformInt(size);
+        int index = uniform(size);
         return items[index];
     }
 
+    // add all the items with one capacity check; nothing is added if any item is null
+    public void enqueueAll(Item[] source) {
+        if (source == null) {
+            throw new IllegalArgumentException();
+        }
+        for (Item item : source) {
+            if (item == null) {
+                throw new IllegalArgumentException();
+            }
+        }
+        if (size + source.length > arraySize) {
+            int capacity = arraySize;
+            while (capacity < size + source.length) {
+                capacity *= 2;
+            }
+            resize(capacity);
+        }
+        System.arraycopy(source, 0, items, size, source.length);
+        size += source.length;
+        modifications += 1;
+    }
+
+    // add all the items of source, which may be this queue, with one capacity check
+    public void enqueueAll(Iterable<? extends Item> source) {
+        if (source == null) {
+            throw new IllegalArgumentException();
+        }
+        enqueueAll((Item[]) Deque.arrayOf(source));
+    }
+
+    // the items in storage order
+    Object[] toArray() {
+        return Arrays.copyOf(items, size, Object[].class);
+    }
+
+    // remove and return k random items, in random order, resizing at most once;
+    // like dequeue() on an empty queue, throws NoSuchElementException if there
+    // are fewer than k items
+    public List<Item> dequeueBatch(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (k > size) {
+            throw new NoSuchElementException();
+        }
+        Object[] batch = new Object[k];
+        for (int i = 0; i < k; i++) {
+            int index = uniform(size);
+            int last = size - 1;
+            batch[i] = items[index];
+            items[index] = items[last];
+            items[last] = null;
+            size = last;
+        }
+        modifications += 1;
+        int capacity = arraySize;
+        while (capacity > INIT_SIZE && size < 0.25 * capacity) {
+            capacity /= 2;
+        }
+        if (capacity != arraySize) {
+            resize(capacity);
+        }
+        return (List<Item>) Arrays.asList(batch);
+    }
+
+    // return k random items (but do not remove them); without replacement the
+    // k items are distinct, drawn by a partial shuffle that leaves the queue as it
+    // is. Like sample() on an empty queue, throws NoSuchElementException if there
+    // are too few items: fewer than k without replacement, none with it
+    public List<Item> sampleBatch(int k, boolean withReplacement) {
+        if (k < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (withReplacement ? k > 0 && isEmpty() : k > size) {
+            throw new NoSuchElementException();
+        }
+        Object[] batch = new Object[k];
+        if (withReplacement) {
+            for (int i = 0; i < k; i++) {
+                batch[i] = items[uniform(size)];
+            }
+        } else {
+            Displaced displaced = new Displaced();
+            for (int i = 0; i < k; i++) {
+                int pick = i + uniform(size - i);
+                batch[i] = items[displaced.get(pick)];
+                displaced.put(pick, displaced.get(i));
+            }
+        }
+        return (List<Item>) Arrays.asList(batch);
+    }
+
     // return an independent iterator over items in random order
     public Iterator<Item> iterator() {
         return new RandomDequeIterator();
     }
 
+    // a Fisher-Yates shuffle of the indices 0..n-1 carried out one step per
+    // next(); only the indices the swaps have moved are stored, so starting an
+    // iterator is O(1) and the work grows with the number of items consumed
     private class RandomDequeIterator implements Iterator<Item> {
-        private Item[] randomized;
+        private final int length;
+        private final int expectedModifications;
+        private final Displaced displaced;
         private int position;
 
         public RandomDequeIterator() {
-            this.randomized = (Item[]) new Object[size];
-            System.arraycopy(items, 0, randomized, 0, size);
-            StdRandom.shuffle(randomized);
+            this.length = size;
+            this.expectedModifications = modifications;
+            this.displaced = new Displaced();
             this.position = 0;
         }
 
         @Override
         public boolean hasNext() {
-            return position < size;
+            return position < length;
         }
 
         @Override
@@ -97,7 +222,14 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            return randomized[position++];
+            if (modifications != expectedModifications) {
+                throw new ConcurrentModificationException();
+            }
+            int pick = position + uniform(length - position);
+            int index = displaced.get(pick);
+            displaced.put(pick, displaced.get(position));
+            position += 1;
+            return items[index];
         }
 
         @Override
@@ -106,6 +238,78 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         }
     }
 
+    // return a spliterator over a shuffled snapshot of the items; the snapshot
+    // costs O(n) up front but splits into exact halves for parallel streams
+    @Override
+    public Spliterator<Item> spliterator() {
+        Object[] snapshot = Arrays.copyOf(items, size);
+        for (int i = size - 1; i > 0; i--) {
+            int j = uniform(i + 1);
+            Object swap = snapshot[i];
+            snapshot[i] = snapshot[j];
+            snapshot[j] = swap;
+        }
+        return Spliterators.spliterator(snapshot, Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL);
+    }
+
+    // open-addressing int map from a shuffle position to the index it now holds;
+    // positions never moved map to themselves
+    private static class Displaced {
+        private static final int EMPTY = -1;
+        private int[] keys;
+        private int[] values;
+        private int count;
+
+        Displaced() {
+            keys = new int[INIT_SIZE];
+            values = new int[INIT_SIZE];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        private int find(int[] table, int key) {
+            int mask = table.length - 1;
+            int hash = key * 0x9E3779B9;
+            int i = (hash ^ (hash >>> 16)) & mask;
+            while (table[i] != EMPTY && table[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        int get(int key) {
+            int i = find(keys, key);
+            return keys[i] == EMPTY ? key : values[i];
+        }
+
+        void put(int key, int value) {
+            int i = find(keys, key);
+            if (keys[i] == EMPTY) {
+                if (2 * (count + 1) > keys.length) {
+                    grow();
+                    i = find(keys, key);
+                }
+                keys[i] = key;
+                count += 1;
+            }
+            values[i] = value;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != EMPTY) {
+                    int i = find(keys, oldKeys[j]);
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+
     // unit testing (required)
     public static void main(String[] args) {
         RandomizedQueue<String> deque = new RandomizedQueue<>();
@@ -133,5 +337,11 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         }
         System.out.println();
         System.out.println("Size: " + deque.size());
+
+        // batches
+        deque.enqueueAll(new String[] {"C0", "C1", "C2", "C3", "C4", "C5"});
+        System.out.println("Distinct sample: " + deque.sampleBatch(6, false));
+        System.out.println("Sample with replacement: " + deque.sampleBatch(6, true));
+        System.out.println("Dequeued: " + deque.dequeueBatch(4) + ", size: " + deque.size());
     }
 }
@@ -0,0 +1,310 @@
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.random.RandomGenerator;
+
+/**
+ * A randomized queue whose items carry positive weights: sample() and dequeue()
+ * choose each item with probability proportional to its weight. Weights live
+ * in a Fenwick tree over the item array, so enqueue, sample and dequeue take
+ * O(log n), and the bulk constructor loads n items in O(n).
+ */
+public class WeightedRandomizedQueue<Item> implements Iterable<Item> {
+    private static final int INIT_SIZE = 8;
+    private Item[] items;
+    private double[] weights;
+    private SumTree tree;
+    private int size;
+    private int modifications;
+    private final RandomGenerator random;
+
+    // construct an empty weighted randomized queue
+    public WeightedRandomizedQueue() {
+        this((RandomGenerator) null);
+    }
+
+    // construct an empty weighted randomized queue drawing from random instead of StdRandom
+    public WeightedRandomizedQueue(RandomGenerator random) {
+        this.items = (Item[]) new Object[INIT_SIZE];
+        this.weights = new double[INIT_SIZE];
+        this.tree = new SumTree(weights, 0);
+        this.size = 0;
+        this.random = random;
+    }
+
+    // construct a weighted randomized queue holding items[i] with weights[i], in O(n)
+    public WeightedRandomizedQueue(Item[] items, double[] weights) {
+        if (items == null || weights == null || items.length != weights.length) {
+            throw new IllegalArgumentException();
+        }
+        int capacity = INIT_SIZE;
+        while (capacity < items.length) {
+            capacity *= 2;
+        }
+        this.items = (Item[]) new Object[capacity];
+        this.weights = new double[capacity];
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] == null) {
+                throw new IllegalArgumentException();
+            }
+            checkWeight(weights[i]);
+            this.items[i] = items[i];
+            this.weights[i] = weights[i];
+        }
+        this.size = items.length;
+        this.tree = new SumTree(this.weights, size);
+        this.random = null;
+    }
+
+    private static void checkWeight(double weight) {
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("weight must be positive and finite: " + weight);
+        }
+    }
+
+    // uniform in [0, 1), from StdRandom unless a generator was supplied
+    private double uniform() {
+        return random == null ? StdRandom.uniformDouble() : random.nextDouble();
+    }
+
+    // is the queue empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // return the number of items on the queue
+    public int size() {
+        return size;
+    }
+
+    // return the sum of the weights of the items on the queue
+    public double totalWeight() {
+        return size == 0 ? 0.0 : tree.total();
+    }
+
+    // the tree is rebuilt from the raw weights on every resize, which also
+    // discards any rounding error the incremental updates have accumulated
+    private void resize(int capacity) {
+        Item[] temp = (Item[]) new Object[capacity];
+        double[] tempWeights = new double[capacity];
+        System.arraycopy(items, 0, temp, 0, size);
+        System.arraycopy(weights, 0, tempWeights, 0, size);
+        items = temp;
+        weights = tempWeights;
+        tree = new SumTree(weights, size);
+    }
+
+    // add the item with the given weight
+    public void enqueue(Item item, double weight) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        checkWeight(weight);
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        items[size] = item;
+        weights[size] = weight;
+        tree.add(size, weight);
+        size += 1;
+        modifications += 1;
+    }
+
+    // index of an item chosen in proportion to its weight
+    private int pick() {
+        while (true) {
+            int index = tree.find(uniform() * tree.total());
+            if (index < size) {
+                return index;
+            }
+            // rounding left a sliver of weight past the last item
+            tree = new SumTree(weights, size);
+        }
+    }
+
+    // remove and return an item chosen in proportion to its weight
+    public Item dequeue() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        int index = pick();
+        int last = size - 1;
+        Item item = items[index];
+        if (index != last) {
+            tree.add(index, weights[last] - weights[index]);
+            items[index] = items[last];
+            weights[index] = weights[last];
+        }
+        tree.add(last, -weights[last]);
+        items[last] = null;
+        weights[last] = 0;
+        size -= 1;
+        modifications += 1;
+        if (items.length > INIT_SIZE && size < items.length / 4) {
+            resize(items.length / 2);
+        } else if (tree.isStale()) {
+            tree = new SumTree(weights, size);
+        }
+        return item;
+    }
+
+    // return an item chosen in proportion to its weight (but do not remove it)
+    public Item sample() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return items[pick()];
+    }
+
+    // return an iterator that visits every item once, in the order successive
+    // dequeues would; starting it copies the weights in O(n)
+    public Iterator<Item> iterator() {
+        return new WeightedIterator();
+    }
+
+    private class WeightedIterator implements Iterator<Item> {
+        private final int expectedModifications;
+        private final double[] remaining;
+        private SumTree remainingTree;
+        private int left;
+
+        public WeightedIterator() {
+            this.expectedModifications = modifications;
+            this.remaining = new double[items.length];
+            System.arraycopy(weights, 0, remaining, 0, size);
+            this.remainingTree = new SumTree(remaining, size);
+            this.left = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return left > 0;
+        }
+
+        @Override
+        public Item next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (modifications != expectedModifications) {
+                throw new ConcurrentModificationException();
+            }
+            int index = remainingTree.find(uniform() * remainingTree.total());
+            while (index >= size || remaining[index] == 0) {
+                // rounding picked a visited item or an empty slot
+                remainingTree = new SumTree(remaining, size);
+                index = remainingTree.find(uniform() * remainingTree.total());
+            }
+            remainingTree.add(index, -remaining[index]);
+            remaining[index] = 0;
+            left -= 1;
+            if (remainingTree.isStale()) {
+                remainingTree = new SumTree(remaining, size);
+            }
+            return items[index];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // Fenwick tree of prefix sums over a power-of-two number of slots. Taking
+    // weight out of a partial sum leaves the rounding error of the larger value
+    // behind, so the tree tracks how much weight it has lost since it was built
+    // and reports itself stale once that exceeds what remains; rebuilding then
+    // costs O(n) per halving of the total, amortised O(1) per removal
+    private static class SumTree {
+        private final double[] tree;
+        private double removed;
+
+        // build from the first n weights in O(capacity)
+        SumTree(double[] weights, int n) {
+            tree = new double[weights.length + 1];
+            System.arraycopy(weights, 0, tree, 1, n);
+            for (int i = 1; i < tree.length; i++) {
+                int parent = i + (i & -i);
+                if (parent < tree.length) {
+                    tree[parent] += tree[i];
+                }
+            }
+        }
+
+        void add(int index, double delta) {
+            if (delta < 0) {
+                removed -= delta;
+            }
+            for (int i = index + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        double total() {
+            return tree[tree.length - 1];
+        }
+
+        boolean isStale() {
+            return removed > total();
+        }
+
+        // the index whose slot covers target, i.e. the smallest index with
+        // prefix sum through it greater than target
+        int find(double target) {
+            int position = 0;
+            for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+                int next = position + step;
+                if (next < tree.length && tree[next] <= target) {
+                    position = next;
+                    target -= tree[next];
+                }
+            }
+            return position;
+        }
+    }
+
+    // unit testing
+    public static void main(String[] args) {
+        WeightedRandomizedQueue<String> queue = new WeightedRandomizedQueue<>();
+        for (int i = 1; i <= 4; i++) {
+            queue.enqueue("w" + i, i);
+        }
+        int[] counts = new int[5];
+        int trials = 100_000;
+        for (int t = 0; t < trials; t++) {
+            counts[queue.sample().charAt(1) - '0'] += 1;
+        }
+        for (int i = 1; i <= 4; i++) {
+            System.out.printf("w%d sampled %.3f (expected %.3f)%n", i, (double) counts[i] / trials, i / 10.0);
+        }
+
+        for (String s : queue) {
+            System.out.print(s + " ");
+        }
+        System.out.println();
+        while (!queue.isEmpty()) {
+            System.out.print(queue.dequeue() + " ");
+        }
+        System.out.println();
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Integer[] items = new Integer[n];
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = i;
+            weights[i] = 1 + i % 10;
+        }
+        long start = System.nanoTime();
+        WeightedRandomizedQueue<Integer> bulk = new WeightedRandomizedQueue<>(items, weights);
+        System.out.printf("bulk load of %d items: %.1f ms%n", n, (System.nanoTime() - start) / 1e6);
+        start = System.nanoTime();
+        long sum = 0;
+        while (!bulk.isEmpty()) {
+            sum += bulk.dequeue();
+        }
+        System.out.printf("dequeue all: %.1f ms (checksum %s)%n", (System.nanoTime() - start) / 1e6,
+                sum == (long) n * (n - 1) / 2 ? "ok" : "BAD");
+    }
+}
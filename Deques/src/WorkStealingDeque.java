@@ -0,0 +1,203 @@
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free work-stealing deque (Chase and Lev, 2005, with the memory
+ * ordering of Le et al., 2013). One owner thread adds and removes at the front;
+ * any number of other threads may steal from the back concurrently.
+ * Positions only ever grow and are masked into a power-of-two ring, which is
+ * replaced by a larger copy when full and never shrinks.
+ */
+public class WorkStealingDeque<Item> {
+    private static final int INIT_SIZE = 32;
+
+    // items occupy positions [top, bottom); the owner works at bottom, thieves at top
+    private final AtomicLong top;
+    private volatile long bottom;
+    private volatile AtomicReferenceArray<Item> items;
+    // positions below this have had their slots nulled (owner thread only)
+    private long cleared;
+
+    // construct an empty deque
+    public WorkStealingDeque() {
+        top = new AtomicLong();
+        bottom = 0;
+        items = new AtomicReferenceArray<>(INIT_SIZE);
+    }
+
+    // is the deque empty? (a snapshot; may be stale by the time it returns)
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // return the number of items on the deque (a snapshot)
+    public int size() {
+        long t = top.get();
+        long b = bottom;
+        return (int) Math.max(0, b - t);
+    }
+
+    private static <Item> int slot(AtomicReferenceArray<Item> array, long position) {
+        return (int) (position & (array.length() - 1));
+    }
+
+    // copies positions [t, b) into a ring twice the size; thieves still holding
+    // the old ring read the same items from it
+    private AtomicReferenceArray<Item> grow(AtomicReferenceArray<Item> array, long t, long b) {
+        AtomicReferenceArray<Item> temp = new AtomicReferenceArray<>(array.length() * 2);
+        for (long i = t; i < b; i++) {
+            temp.setPlain(slot(temp, i), array.getPlain(slot(array, i)));
+        }
+        items = temp;
+        cleared = t;
+        return temp;
+    }
+
+    // nulls the slots of the positions thieves have taken since the last sweep,
+    // so stolen items do not stay reachable until the ring wraps (owner thread
+    // only). Only the owner writes the ring and no one reads a position below
+    // top again, so this cannot race a push; positions below b - length share
+    // their slots with later pushes and are skipped
+    private void sweep(AtomicReferenceArray<Item> array, long t, long b) {
+        for (long i = Math.max(cleared, b - array.length()); i < t; i++) {
+            array.setRelease(slot(array, i), null);
+        }
+        cleared = Math.max(cleared, t);
+    }
+
+    // add the item to the front (owner thread only)
+    public void addFirst(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        long b = bottom;
+        long t = top.get();
+        AtomicReferenceArray<Item> array = items;
+        if (b - t >= array.length()) {
+            array = grow(array, t, b);
+        } else {
+            sweep(array, t, b);
+        }
+        array.setRelease(slot(array, b), item);
+        bottom = b + 1;
+    }
+
+    // remove and return the item from the front (owner thread only)
+    public Item removeFirst() {
+        long b = bottom - 1;
+        AtomicReferenceArray<Item> array = items;
+        // the volatile write of bottom is ordered before the read of top, so a
+        // thief and the owner cannot both miss each other on the last item
+        bottom = b;
+        long t = top.get();
+        sweep(array, t, b + 1);
+        if (t > b) {
+            bottom = b + 1;
+            throw new NoSuchElementException();
+        }
+        Item item = array.get(slot(array, b));
+        if (t < b) {
+            array.setRelease(slot(array, b), null);
+            return item;
+        }
+        // last item: race the thieves for it
+        boolean won = top.compareAndSet(t, t + 1);
+        bottom = b + 1;
+        if (!won) {
+            throw new NoSuchElementException();
+        }
+        array.setRelease(slot(array, b), null);
+        return item;
+    }
+
+    // remove and return the item from the back, from any thread; returns null
+    // if the deque is empty or another thread took that item first
+    public Item steal() {
+        long t = top.get();
+        long b = bottom;
+        if (t >= b) {
+            return null;
+        }
+        AtomicReferenceArray<Item> array = items;
+        Item item = array.get(slot(array, t));
+        if (!top.compareAndSet(t, t + 1)) {
+            return null;
+        }
+        return item;
+    }
+
+    // stress test: the owner pushes and pops while thieves steal, and every item
+    // must come out exactly once
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int thieves = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        int[] taken = new int[n];
+        int[][] stolen = new int[thieves][n];
+        int[] stolenCount = new int[thieves];
+        AtomicBoolean done = new AtomicBoolean();
+
+        Thread[] threads = new Thread[thieves];
+        for (int i = 0; i < thieves; i++) {
+            int id = i;
+            threads[i] = new Thread(() -> {
+                while (true) {
+                    boolean finished = done.get();
+                    Integer item = deque.steal();
+                    if (item != null) {
+                        stolen[id][stolenCount[id]++] = item;
+                    } else if (finished && deque.isEmpty()) {
+                        return;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        int ownerCount = 0;
+        for (int i = 0; i < n; i++) {
+            deque.addFirst(i);
+            if (i % 3 == 0) {
+                try {
+                    int item = deque.removeFirst();
+                    taken[ownerCount++] = item;
+                } catch (NoSuchElementException e) {
+                    // a thief emptied the deque first
+                }
+            }
+        }
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        boolean[] seen = new boolean[n];
+        int total = 0;
+        Set<Integer> duplicates = new HashSet<>();
+        for (int i = 0; i < ownerCount; i++) {
+            if (seen[taken[i]]) {
+                duplicates.add(taken[i]);
+            }
+            seen[taken[i]] = true;
+            total += 1;
+        }
+        for (int i = 0; i < thieves; i++) {
+            for (int j = 0; j < stolenCount[i]; j++) {
+                if (seen[stolen[i][j]]) {
+                    duplicates.add(stolen[i][j]);
+                }
+                seen[stolen[i][j]] = true;
+                total += 1;
+            }
+        }
+        System.out.println("owner took " + ownerCount + ", thieves stole " + (total - ownerCount));
+        System.out.println("items: " + n + ", taken: " + total + ", duplicates: " + duplicates.size());
+        if (total != n || !duplicates.isEmpty()) {
+            throw new AssertionError("items lost or taken twice");
+        }
+    }
+}
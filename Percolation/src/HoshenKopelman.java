@@ -0,0 +1,272 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Row-streaming percolation on an n-by-n grid in O(n) memory.
+ * Sites are read one row at a time; only the labels of the previous row are kept,
+ * and clusters are relabelled compactly after every row (Hoshen-Kopelman), so
+ * grids far larger than the heap can be swept in a single pass.
+ */
+public class HoshenKopelman {
+    // largest region of a bitmap file mapped at once
+    private static final long MAX_WINDOW = 1L << 28;
+
+    private final int length;
+    private long openSites;
+    private long clusters;
+    private long largestCluster;
+    private boolean percolates;
+
+    // supplies the grid one row at a time, top row first
+    public interface RowSource {
+        // fills row[c] with whether site (current row, c + 1) is open
+        void nextRow(boolean[] row);
+    }
+
+    // sweeps the n-by-n grid whose rows are produced by source
+    public HoshenKopelman(int n, RowSource source) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Grid size must be positive");
+        }
+        if (source == null) {
+            throw new IllegalArgumentException();
+        }
+        this.length = n;
+        sweep(source);
+    }
+
+    // rows where each site is open independently with probability p
+    public static RowSource random(double p, long seed) {
+        if (Double.isNaN(p) || p < 0 || p > 1) {
+            throw new IllegalArgumentException("p must be in [0, 1]");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        return row -> {
+            for (int c = 0; c < row.length; c++) {
+                row[c] = random.nextDouble() < p;
+            }
+        };
+    }
+
+    // rows read from a bitmap file: each row is (n + 7) / 8 bytes, site c in bit c % 8
+    // of byte c / 8, set when open; the file is memory-mapped a window at a time
+    public static RowSource fromFile(String filename, int n) {
+        if (filename == null || n <= 0) {
+            throw new IllegalArgumentException();
+        }
+        return new MappedRowSource(filename, n);
+    }
+
+    private static class MappedRowSource implements RowSource {
+        private final FileChannel channel;
+        private final int rowBytes;
+        private final int rowsPerWindow;
+        private final int rows;
+        private final byte[] buffer;
+        private MappedByteBuffer window;
+        private int row;
+
+        MappedRowSource(String filename, int n) {
+            try {
+                this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+                this.rowBytes = (n + 7) / 8;
+                if (channel.size() < (long) rowBytes * n) {
+                    channel.close();
+                    throw new IllegalArgumentException("File too short for a " + n + "-by-" + n + " grid");
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not open " + filename, e);
+            }
+            this.rowsPerWindow = (int) Math.max(1, MAX_WINDOW / rowBytes);
+            this.rows = n;
+            this.buffer = new byte[rowBytes];
+            this.row = 0;
+        }
+
+        @Override
+        public void nextRow(boolean[] sites) {
+            try {
+                if (row % rowsPerWindow == 0) {
+                    long start = (long) row * rowBytes;
+                    long span = (long) Math.min(rowsPerWindow, rows - row) * rowBytes;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, start, span);
+                }
+                window.get(buffer);
+                row += 1;
+                if (row == rows) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read row " + (row + 1), e);
+            }
+            for (int c = 0; c < sites.length; c++) {
+                sites[c] = (buffer[c >>> 3] & (1 << (c & 7))) != 0;
+            }
+        }
+    }
+
+    // labels of the previous and current row index into per-cluster arrays; the
+    // first prevCount labels are clusters carried over from the previous row,
+    // the rest are provisional labels created in the current row
+    private void sweep(RowSource source) {
+        boolean[] row = new boolean[length];
+        int[] prevLabel = new int[length];
+        int[] label = new int[length];
+        int[] parent = new int[2 * length];
+        long[] size = new long[2 * length];
+        boolean[] top = new boolean[2 * length];
+        int[] relabel = new int[2 * length];
+        long[] carriedSize = new long[length];
+        boolean[] carriedTop = new boolean[length];
+        int prevCount = 0;
+
+        for (int c = 0; c < length; c++) {
+            prevLabel[c] = -1;
+        }
+
+        for (int r = 0; r < length; r++) {
+            source.nextRow(row);
+            int count = prevCount;
+            for (int c = 0; c < length; c++) {
+                if (!row[c]) {
+                    label[c] = -1;
+                    continue;
+                }
+                openSites += 1;
+                int left = c > 0 ? label[c - 1] : -1;
+                int up = prevLabel[c];
+                int site;
+                if (left < 0 && up < 0) {
+                    site = count++;
+                    parent[site] = site;
+                    size[site] = 0;
+                    top[site] = r == 0;
+                } else if (left < 0) {
+                    site = find(parent, up);
+                } else {
+                    site = find(parent, left);
+                    if (up >= 0) {
+                        int other = find(parent, up);
+                        if (other != site) {
+                            parent[other] = site;
+                            size[site] += size[other];
+                            top[site] |= top[other];
+                        }
+                    }
+                }
+                size[site] += 1;
+                label[c] = site;
+            }
+
+            // clusters whose root no longer reaches the current row are finished;
+            // the rest are compacted into labels 0..next-1 for the next row
+            for (int i = 0; i < count; i++) {
+                relabel[i] = -1;
+            }
+            int next = 0;
+            for (int c = 0; c < length; c++) {
+                if (label[c] >= 0) {
+                    int root = find(parent, label[c]);
+                    if (relabel[root] < 0) {
+                        relabel[root] = next;
+                        carriedSize[next] = size[root];
+                        carriedTop[next] = top[root];
+                        next += 1;
+                    }
+                    prevLabel[c] = relabel[root];
+                } else {
+                    prevLabel[c] = -1;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                if (parent[i] == i && relabel[i] < 0) {
+                    finish(size[i]);
+                }
+            }
+            for (int i = 0; i < next; i++) {
+                parent[i] = i;
+                size[i] = carriedSize[i];
+                top[i] = carriedTop[i];
+            }
+            prevCount = next;
+        }
+
+        for (int i = 0; i < prevCount; i++) {
+            finish(size[i]);
+            if (top[i]) {
+                percolates = true;
+            }
+        }
+    }
+
+    private static int find(int[] parent, int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    private void finish(long clusterSize) {
+        clusters += 1;
+        largestCluster = Math.max(largestCluster, clusterSize);
+    }
+
+    // side length of the grid
+    public int length() {
+        return length;
+    }
+
+    // returns the number of open sites
+    public long numberOfOpenSites() {
+        return openSites;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // number of clusters of open sites
+    public long numberOfClusters() {
+        return clusters;
+    }
+
+    // number of sites in the largest cluster
+    public long largestCluster() {
+        return largestCluster;
+    }
+
+    // average number of sites per cluster
+    public double meanClusterSize() {
+        return clusters == 0 ? 0 : (double) openSites / clusters;
+    }
+
+    // test client
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.out.println("Usage: java-algs4 HoshenKopelman n p [seed]");
+            System.out.println("       java-algs4 HoshenKopelman n bitmap-file");
+            return;
+        }
+        int n = Integer.parseInt(args[0]);
+        RowSource source;
+        try {
+            double p = Double.parseDouble(args[1]);
+            long seed = args.length == 3 ? Long.parseLong(args[2]) : System.nanoTime();
+            source = random(p, seed);
+        } catch (NumberFormatException e) {
+            source = fromFile(args[1], n);
+        }
+        HoshenKopelman sweep = new HoshenKopelman(n, source);
+        System.out.println("open sites   = " + sweep.numberOfOpenSites());
+        System.out.println("clusters     = " + sweep.numberOfClusters());
+        System.out.println("largest      = " + sweep.largestCluster());
+        System.out.println("mean size    = " + sweep.meanClusterSize());
+        System.out.println("percolates   = " + sweep.percolates());
+    }
+}
@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Percolation on lattices too large for Percolation: sites are indexed with longs,
+ * and the union-find links and site flags live in memory-mapped temporary files
+ * rather than on the Java heap. The files are sparse and unlinked as soon as they
+ * are mapped, so only pages around opened sites are ever touched. The mappings
+ * hold memory and disk space until close() releases them; the garbage collector
+ * does not see that pressure, so callers should close every instance they make.
+ */
+public class LargePercolation implements AutoCloseable {
+    // union-find links are mapped 2^27 longs (1 GiB) at a time, flags 2^30 bytes at a time
+    private static final int LINK_SHIFT = 27;
+    private static final int FLAG_SHIFT = 30;
+
+    // site flags
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
+    private static final byte OPEN = 4;
+
+    // sun.misc.Unsafe and its invokeCleaner(ByteBuffer), or null where unavailable
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    // link[i] > 0: site i points at site link[i] - 1
+    // link[i] < 0: site i is a root whose component has -link[i] sites
+    // link[i] == 0: site i has never been opened
+    private LongBuffer[] links;
+    private ByteBuffer[] linkBytes;
+    private ByteBuffer[] flags;
+    private final int length;
+    private final long size;
+    private long openSites;
+    private long clusters;
+    private long largestCluster;
+    private boolean percolates;
+
+    // creates n-by-n grid, with all sites initially blocked
+    public LargePercolation(int n) {
+        this(n, System.getProperty("java.io.tmpdir"));
+    }
+
+    // creates n-by-n grid backed by temporary files in directory
+    public LargePercolation(int n, String directory) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Grid size must be positive");
+        }
+        if (directory == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.length = n;
+        this.size = (long) n * n;
+        try {
+            Path dir = Paths.get(directory);
+            this.linkBytes = map(dir, size * Long.BYTES, (1L << LINK_SHIFT) * Long.BYTES);
+            this.links = new LongBuffer[linkBytes.length];
+            for (int i = 0; i < linkBytes.length; i++) {
+                links[i] = linkBytes[i].order(ByteOrder.nativeOrder()).asLongBuffer();
+            }
+            this.flags = map(dir, size, 1L << FLAG_SHIFT);
+        } catch (IOException e) {
+            if (linkBytes != null) {
+                for (ByteBuffer buffer : linkBytes) {
+                    unmap(buffer);
+                }
+            }
+            throw new IllegalStateException("Could not map a " + n + "-by-" + n + " lattice", e);
+        }
+    }
+
+    // maps a zero-filled region of the given size in chunks of at most chunk bytes
+    private static ByteBuffer[] map(Path dir, long bytes, long chunk) throws IOException {
+        Path file = Files.createTempFile(dir, "percolation", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((bytes + chunk - 1) / chunk)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = i * chunk;
+                try {
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(chunk, bytes - start));
+                } catch (IOException | RuntimeException e) {
+                    // the caller never sees the chunks mapped so far
+                    for (int j = 0; j < i; j++) {
+                        unmap(chunks[j]);
+                    }
+                    throw e;
+                }
+            }
+            return chunks;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // unmaps the lattice's storage; any later call that reads a site throws
+    // IllegalStateException
+    @Override
+    public void close() {
+        if (links == null) {
+            return;
+        }
+        ByteBuffer[] mapped = linkBytes;
+        ByteBuffer[] mappedFlags = flags;
+        links = null;
+        linkBytes = null;
+        flags = null;
+        for (ByteBuffer buffer : mapped) {
+            unmap(buffer);
+        }
+        for (ByteBuffer buffer : mappedFlags) {
+            unmap(buffer);
+        }
+    }
+
+    // Java 17 has no public unmap, so this goes through sun.misc.Unsafe's
+    // invokeCleaner, reached by reflection; where that is unavailable the
+    // mapping is left for the garbage collector as before
+    private static void unmap(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            // leave it to the garbage collector
+        }
+    }
+
+    private void checkRep(int row, int col) {
+        if (links == null) {
+            throw new IllegalStateException("Lattice has been closed");
+        }
+        if (row < 1 || row > length || col < 1 || col > length) {
+            throw new IllegalArgumentException("Invalid row or column");
+        }
+    }
+
+    private long index(int row, int col) {
+        checkRep(row, col);
+        return (long) (row - 1) * length + (col - 1);
+    }
+
+    private long link(long site) {
+        return links[(int) (site >>> LINK_SHIFT)].get((int) (site & ((1 << LINK_SHIFT) - 1)));
+    }
+
+    private void setLink(long site, long value) {
+        links[(int) (site >>> LINK_SHIFT)].put((int) (site & ((1 << LINK_SHIFT) - 1)), value);
+    }
+
+    private byte flag(long site) {
+        return flags[(int) (site >>> FLAG_SHIFT)].get((int) (site & ((1 << FLAG_SHIFT) - 1)));
+    }
+
+    private void setFlag(long site, byte value) {
+        flags[(int) (site >>> FLAG_SHIFT)].put((int) (site & ((1 << FLAG_SHIFT) - 1)), value);
+    }
+
+    // root of site, halving the path on the way up
+    private long find(long site) {
+        long up = link(site);
+        while (up > 0) {
+            long next = up - 1;
+            long grand = link(next);
+            if (grand <= 0) {
+                return next;
+            }
+            setLink(site, grand);
+            site = grand - 1;
+            up = link(site);
+        }
+        return site;
+    }
+
+    // merges the components of p and q, carrying the top/bottom flags to the new root
+    private void union(long p, long q) {
+        long rootP = find(p);
+        long rootQ = find(q);
+        if (rootP == rootQ) {
+            return;
+        }
+        long sizeP = -link(rootP);
+        long sizeQ = -link(rootQ);
+        if (sizeP < sizeQ) {
+            long temp = rootP;
+            rootP = rootQ;
+            rootQ = temp;
+        }
+        setLink(rootQ, rootP + 1);
+        setLink(rootP, -(sizeP + sizeQ));
+        byte merged = (byte) (flag(rootP) | flag(rootQ));
+        setFlag(rootP, merged);
+        clusters -= 1;
+        largestCluster = Math.max(largestCluster, sizeP + sizeQ);
+        if ((merged & (TOP | BOTTOM)) == (TOP | BOTTOM)) {
+            percolates = true;
+        }
+    }
+
+    // opens the site (row, col) if it is not open already
+    public void open(int row, int col) {
+        long site = index(row, col);
+        byte state = flag(site);
+        if ((state & OPEN) != 0) {
+            return;
+        }
+        state |= OPEN;
+        if (row == 1) {
+            state |= TOP;
+        }
+        if (row == length) {
+            state |= BOTTOM;
+        }
+        setFlag(site, state);
+        setLink(site, -1);
+        openSites += 1;
+        clusters += 1;
+        largestCluster = Math.max(largestCluster, 1);
+        if ((state & (TOP | BOTTOM)) == (TOP | BOTTOM)) {
+            percolates = true;
+        }
+
+        if (row > 1 && (flag(site - length) & OPEN) != 0) {
+            union(site, site - length);
+        }
+        if (row < length && (flag(site + length) & OPEN) != 0) {
+            union(site, site + length);
+        }
+        if (col > 1 && (flag(site - 1) & OPEN) != 0) {
+            union(site, site - 1);
+        }
+        if (col < length && (flag(site + 1) & OPEN) != 0) {
+            union(site, site + 1);
+        }
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        return (flag(index(row, col)) & OPEN) != 0;
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        long site = index(row, col);
+        if ((flag(site) & OPEN) == 0) {
+            return false;
+        }
+        return (flag(find(site)) & TOP) != 0;
+    }
+
+    // returns the number of open sites
+    public long numberOfOpenSites() {
+        return openSites;
+    }
+
+    // returns the number of clusters of open sites
+    public long numberOfClusters() {
+        return clusters;
+    }
+
+    // returns the number of sites in the largest cluster
+    public long largestCluster() {
+        return largestCluster;
+    }
+
+    // returns the average number of sites per cluster
+    public double meanClusterSize() {
+        return clusters == 0 ? 0 : (double) openSites / clusters;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // test client
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        try (LargePercolation percolation = new LargePercolation(n)) {
+            SplittableRandom random = new SplittableRandom();
+            while (!percolation.percolates()) {
+                percolation.open(random.nextInt(n) + 1, random.nextInt(n) + 1);
+            }
+            System.out.println("open sites = " + percolation.numberOfOpenSites());
+            System.out.println("threshold  = " + (double) percolation.numberOfOpenSites() / ((long) n * n));
+        }
+    }
+}
@@ -1,14 +1,27 @@
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
-
 public class Percolation {
-    private final WeightedQuickUnionUF unionFind;
-    private final WeightedQuickUnionUF withoutBottom;
-    private final boolean[][] grid;
+    // site states written by snapshot()
+    public static final byte BLOCKED = 0;
+    public static final byte OPEN = 1;
+    public static final byte FULL = 2;
+
+    // largest n whose n * n sites can be indexed with an int; see LargePercolation
+    static final int MAX_LENGTH = 46340;
+
+    // site flags: the site is open; as a root, its component touches the top / bottom row
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
+    private static final byte OPENED = 4;
+    private static final byte SPANNING = TOP | BOTTOM;
+
+    private final int[] parent;
+    private final int[] componentSize;
+    private final byte[] status;
+    private final ClusterSizes clusterSizeCounts;
     private final int length;
     private final int size;
-    private final int top;
-    private final int bottom;
     private int openSites;
+    private int clusters;
+    private int largestCluster;
     private boolean percolates;
 
     // creates n-by-n grid, with all sites initially blocked
@@ -16,27 +29,20 @@ public class Percolation {
         if (n <= 0) {
             throw new IllegalArgumentException("Grid size must be positive");
         }
+        if (n > MAX_LENGTH) {
+            throw new IllegalArgumentException("Grid size above " + MAX_LENGTH + ", use LargePercolation");
+        }
 
         this.length = n;
         this.size = n * n;
-        this.grid = new boolean[length][length];
-        for (int i = 0; i < length; i++) {
-            for (int j = 0; j < length; j++) {
-                grid[i][j] = false;
-            }
-        }
-        this.top = 0;
-        this.bottom = size + 1;
         this.openSites = 0;
         this.percolates = false;
 
-        this.unionFind = new WeightedQuickUnionUF(size + 2);
-        this.withoutBottom = new WeightedQuickUnionUF(size + 1);
-        for (int i = 1; i <= length; i++) {
-            withoutBottom.union(top, index(1, i));
-            unionFind.union(top, index(1, i));
-            unionFind.union(bottom, index(length, i));
-        }
+        // parent and size are only read for open sites, so open() sets them up
+        this.parent = new int[size];
+        this.componentSize = new int[size];
+        this.status = new byte[size];
+        this.clusterSizeCounts = new ClusterSizes(size);
     }
 
     private void checkRep(int row, int col) {
@@ -47,50 +53,121 @@ public class Percolation {
 
     private int index(int row, int col) {
         checkRep(row, col);
-        return (row - 1) * length + col;
+        return (row - 1) * length + (col - 1);
     }
 
-    private void connectNeighbors(int row, int col) {
-        int[] rows = {-1, 0, 0, 1};
-        int[] cols = {0, -1, 1, 0};
-        for (int i = 0; i < rows.length; i++) {
-            int r = row + rows[i];
-            int c = col + cols[i];
-            if (r < 1 || r > length || c < 1 || c > length) {
-                continue;
-            }
-            if (isOpen(r, c)) {
-                unionFind.union(index(r, c), index(row, col));
-                withoutBottom.union(index(r, c), index(row, col));
-            }
+    // root of p, halving the path on the way up
+    private int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    // merges the components of p and q, carrying the top/bottom flags to the new root
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return;
+        }
+        if (componentSize[rootP] < componentSize[rootQ]) {
+            int temp = rootP;
+            rootP = rootQ;
+            rootQ = temp;
+        }
+        clusterSizeCounts.add(componentSize[rootP], -1);
+        clusterSizeCounts.add(componentSize[rootQ], -1);
+        parent[rootQ] = rootP;
+        componentSize[rootP] += componentSize[rootQ];
+        clusterSizeCounts.add(componentSize[rootP], 1);
+        clusters -= 1;
+        largestCluster = Math.max(largestCluster, componentSize[rootP]);
+        status[rootP] |= status[rootQ];
+        if ((status[rootP] & SPANNING) == SPANNING) {
+            percolates = true;
+        }
+    }
+
+    // joins site with neighbor if the neighbor is open; both are already in bounds
+    private void connect(int site, int neighbor) {
+        if ((status[neighbor] & OPENED) != 0) {
+            union(site, neighbor);
         }
     }
 
     // opens the site (row, col) if it is not open already
     public void open(int row, int col) {
-        if (isOpen(row, col)) {
+        int site = index(row, col);
+        if ((status[site] & OPENED) != 0) {
             return;
         }
-        grid[row - 1][col - 1] = true;
+        byte flags = OPENED;
+        if (row == 1) {
+            flags |= TOP;
+        }
+        if (row == length) {
+            flags |= BOTTOM;
+        }
+        status[site] = flags;
+        parent[site] = site;
+        componentSize[site] = 1;
         openSites += 1;
-        connectNeighbors(row, col);
-        if (openSites >= length) {
-            percolates = unionFind.find(top) == unionFind.find(bottom);
+        clusters += 1;
+        clusterSizeCounts.add(1, 1);
+        largestCluster = Math.max(largestCluster, 1);
+        if ((flags & SPANNING) == SPANNING) {
+            percolates = true;
+        }
+
+        if (row > 1) {
+            connect(site, site - length);
+        }
+        if (row < length) {
+            connect(site, site + length);
+        }
+        if (col > 1) {
+            connect(site, site - 1);
+        }
+        if (col < length) {
+            connect(site, site + 1);
         }
     }
 
     // is the site (row, col) open?
     public boolean isOpen(int row, int col) {
-        checkRep(row, col);
-        return grid[row - 1][col - 1];
+        return (status[index(row, col)] & OPENED) != 0;
     }
 
     // is the site (row, col) full?
     public boolean isFull(int row, int col) {
-        if (!isOpen(row, col)) {
+        int site = index(row, col);
+        if ((status[site] & OPENED) == 0) {
             return false;
         }
-        return withoutBottom.find(top) == withoutBottom.find(index(row, col));
+        return (status[find(site)] & TOP) != 0;
+    }
+
+    // writes the state (BLOCKED, OPEN or FULL) of site (row, col) into
+    // states[(row - 1) * n + (col - 1)] in one pass over the grid; each site is
+    // pointed straight at its root, so the rest of its component finds it in a hop or two
+    public void snapshot(byte[] states) {
+        if (states == null || states.length != size) {
+            throw new IllegalArgumentException("Snapshot needs one entry per site");
+        }
+        for (int site = 0; site < size; site++) {
+            if ((status[site] & OPENED) == 0) {
+                states[site] = BLOCKED;
+                continue;
+            }
+            int root = parent[site];
+            if (parent[root] != root) {
+                root = find(site);
+                parent[site] = root;
+            }
+            states[site] = (status[root] & TOP) != 0 ? FULL : OPEN;
+        }
     }
 
     // returns the number of open sites
@@ -98,8 +175,123 @@ public class Percolation {
         return openSites;
     }
 
+    // returns the number of clusters of open sites
+    public int numberOfClusters() {
+        return clusters;
+    }
+
+    // returns the number of sites in the largest cluster
+    public int largestCluster() {
+        return largestCluster;
+    }
+
+    // returns the average number of sites per cluster
+    public double meanClusterSize() {
+        return clusters == 0 ? 0 : (double) openSites / clusters;
+    }
+
+    // returns the number of clusters with exactly s sites
+    public int clusterSizeCount(int s) {
+        if (s < 1 || s > size) {
+            throw new IllegalArgumentException("Cluster size out of range");
+        }
+        return clusterSizeCounts.get(s);
+    }
+
     // does the system percolate?
     public boolean percolates() {
         return percolates;
     }
+
+    // number of clusters of each size. Sizes below SMALL, where nearly all
+    // clusters are, index a plain array; the rest go in an open-addressing map.
+    // Distinct sizes sum to at most the number of open sites, so at most
+    // sqrt(2 * openSites) of them are ever present and the map stays small
+    // where an array indexed by size would cost 4 bytes per site
+    private static class ClusterSizes {
+        private static final int SMALL = 1024;
+        private static final int EMPTY = 0;
+
+        private final int[] small;
+        private int[] keys;
+        private int[] counts;
+        private int entries;
+
+        ClusterSizes(int maxSize) {
+            small = new int[Math.min(maxSize, SMALL - 1) + 1];
+            keys = new int[16];
+            counts = new int[16];
+        }
+
+        private int slot(int[] table, int key) {
+            int mask = table.length - 1;
+            int hash = key * 0x9E3779B9;
+            int i = (hash ^ (hash >>> 16)) & mask;
+            while (table[i] != EMPTY && table[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        int get(int s) {
+            if (s < small.length) {
+                return small[s];
+            }
+            int i = slot(keys, s);
+            return keys[i] == EMPTY ? 0 : counts[i];
+        }
+
+        void add(int s, int delta) {
+            if (s < small.length) {
+                small[s] += delta;
+                return;
+            }
+            int i = slot(keys, s);
+            if (keys[i] == EMPTY) {
+                if (2 * (entries + 1) > keys.length) {
+                    grow();
+                    i = slot(keys, s);
+                }
+                keys[i] = s;
+                entries += 1;
+            }
+            counts[i] += delta;
+            if (counts[i] == 0) {
+                remove(i);
+            }
+        }
+
+        // backward-shift deletion, so no tombstones build up as clusters merge
+        private void remove(int hole) {
+            int mask = keys.length - 1;
+            keys[hole] = EMPTY;
+            counts[hole] = 0;
+            entries -= 1;
+            int i = (hole + 1) & mask;
+            while (keys[i] != EMPTY) {
+                int home = slot(keys, keys[i]);
+                if (home != i) {
+                    keys[home] = keys[i];
+                    counts[home] = counts[i];
+                    keys[i] = EMPTY;
+                    counts[i] = 0;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != EMPTY) {
+                    int i = slot(keys, oldKeys[j]);
+                    keys[i] = oldKeys[j];
+                    counts[i] = oldCounts[j];
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,287 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationBenchmark.java
+ *  Execution:    java -Xmx4g PercolationBenchmark [n ...]
+ *  Dependencies: Percolation.java LargePercolation.java
+ *
+ *  Benchmarks percolation back ends on n-by-n grids (default 64 to 8192):
+ *    - open      average time per open(), opening sites in a fixed random
+ *                order until the system percolates
+ *    - isFull    average time per isFull() on random sites of a grid at
+ *                its percolation threshold
+ *    - trial     average time of one whole trial, construction included
+ *    - alloc     heap bytes allocated per opened site over a trial,
+ *                construction included (off-heap storage of
+ *                LargePercolation is not counted)
+ *
+ *  Each measurement follows the usual harness discipline: warmup iterations
+ *  are discarded, every iteration runs whole trials for at least a fixed
+ *  time, and results feed a sink so the work cannot be optimized away.
+ *  Back ends:
+ *    - flagged   Percolation: one union-find with top/bottom root flags
+ *    - dual      the previous design, two WeightedQuickUnionUF instances
+ *                (with and without the virtual bottom site)
+ *    - mapped    LargePercolation: long-indexed, memory-mapped storage
+ *
+ ******************************************************************************/
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+
+public class PercolationBenchmark {
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 200_000_000L;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink;
+
+    // the operations under test, implemented by each back end
+    private abstract static class Backend {
+        abstract void open(int row, int col);
+
+        abstract boolean isFull(int row, int col);
+
+        abstract boolean percolates();
+
+        // releases storage the garbage collector does not track
+        void close() {
+        }
+    }
+
+    private interface Factory {
+        Backend create(int n);
+    }
+
+    private static Backend flagged(int n) {
+        Percolation percolation = new Percolation(n);
+        return new Backend() {
+            @Override
+            void open(int row, int col) {
+                percolation.open(row, col);
+            }
+
+            @Override
+            boolean isFull(int row, int col) {
+                return percolation.isFull(row, col);
+            }
+
+            @Override
+            boolean percolates() {
+                return percolation.percolates();
+            }
+        };
+    }
+
+    private static Backend mapped(int n) {
+        LargePercolation percolation = new LargePercolation(n);
+        return new Backend() {
+            @Override
+            void open(int row, int col) {
+                percolation.open(row, col);
+            }
+
+            @Override
+            boolean isFull(int row, int col) {
+                return percolation.isFull(row, col);
+            }
+
+            @Override
+            boolean percolates() {
+                return percolation.percolates();
+            }
+
+            @Override
+            void close() {
+                percolation.close();
+            }
+        };
+    }
+
+    // the design Percolation used before its single flagged union-find
+    private static class DualUnionFind extends Backend {
+        private final WeightedQuickUnionUF unionFind;
+        private final WeightedQuickUnionUF withoutBottom;
+        private final boolean[][] grid;
+        private final int length;
+        private final int top;
+        private final int bottom;
+        private int openSites;
+        private boolean percolates;
+
+        DualUnionFind(int n) {
+            length = n;
+            grid = new boolean[n][n];
+            top = 0;
+            bottom = n * n + 1;
+            unionFind = new WeightedQuickUnionUF(n * n + 2);
+            withoutBottom = new WeightedQuickUnionUF(n * n + 1);
+            for (int i = 1; i <= n; i++) {
+                withoutBottom.union(top, i);
+                unionFind.union(top, i);
+                unionFind.union(bottom, (n - 1) * n + i);
+            }
+        }
+
+        private int index(int row, int col) {
+            return (row - 1) * length + col;
+        }
+
+        @Override
+        void open(int row, int col) {
+            if (grid[row - 1][col - 1]) {
+                return;
+            }
+            grid[row - 1][col - 1] = true;
+            int[] rows = {-1, 0, 0, 1};
+            int[] cols = {0, -1, 1, 0};
+            for (int i = 0; i < rows.length; i++) {
+                int r = row + rows[i];
+                int c = col + cols[i];
+                if (r >= 1 && r <= length && c >= 1 && c <= length && grid[r - 1][c - 1]) {
+                    unionFind.union(index(r, c), index(row, col));
+                    withoutBottom.union(index(r, c), index(row, col));
+                }
+            }
+            openSites += 1;
+            if (openSites >= length) {
+                percolates = unionFind.find(top) == unionFind.find(bottom);
+            }
+        }
+
+        @Override
+        boolean isFull(int row, int col) {
+            return grid[row - 1][col - 1] && withoutBottom.find(top) == withoutBottom.find(index(row, col));
+        }
+
+        @Override
+        boolean percolates() {
+            return percolates;
+        }
+    }
+
+    // totals over the trials of one iteration
+    private static class Totals {
+        long opens;
+        long openNanos;
+        long queries;
+        long queryNanos;
+        long trials;
+        long trialNanos;
+        long allocated;
+    }
+
+    // opens sites in order until percolation, then queries isFull at random sites
+    private static void trial(Factory factory, int n, int[] order, int[] queries, Totals totals) {
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long start = System.nanoTime();
+        Backend backend = factory.create(n);
+        long opened = 0;
+        long openStart = System.nanoTime();
+        while (!backend.percolates()) {
+            int site = order[(int) opened];
+            backend.open(site / n + 1, site % n + 1);
+            opened += 1;
+        }
+        long openEnd = System.nanoTime();
+        long allocatedAfter = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        int full = 0;
+        long queryStart = System.nanoTime();
+        for (int site : queries) {
+            if (backend.isFull(site / n + 1, site % n + 1)) {
+                full += 1;
+            }
+        }
+        long end = System.nanoTime();
+        backend.close();
+
+        sink += full + opened;
+        totals.opens += opened;
+        totals.openNanos += openEnd - openStart;
+        totals.queries += queries.length;
+        totals.queryNanos += end - queryStart;
+        totals.trials += 1;
+        totals.trialNanos += openEnd - start;
+        totals.allocated += allocatedAfter - allocatedBefore;
+    }
+
+    private static Totals iteration(Factory factory, int n, int[] order, int[] queries) {
+        Totals totals = new Totals();
+        long start = System.nanoTime();
+        do {
+            trial(factory, n, order, queries, totals);
+        } while (System.nanoTime() - start < ITERATION_NANOS);
+        return totals;
+    }
+
+    private static void measure(String name, Factory factory, int n, int[] order, int[] queries) {
+        Totals totals = new Totals();
+        try {
+            for (int i = 0; i < WARMUP; i++) {
+                iteration(factory, n, order, queries);
+            }
+            for (int i = 0; i < ITERATIONS; i++) {
+                Totals result = iteration(factory, n, order, queries);
+                totals.opens += result.opens;
+                totals.openNanos += result.openNanos;
+                totals.queries += result.queries;
+                totals.queryNanos += result.queryNanos;
+                totals.trials += result.trials;
+                totals.trialNanos += result.trialNanos;
+                totals.allocated += result.allocated;
+            }
+        } catch (OutOfMemoryError e) {
+            System.out.printf("%-8s %6d   skipped, heap too small%n", name, n);
+            return;
+        }
+        System.out.printf("%-8s %6d %10.1f %10.1f %12.3f %10.2f%n", name, n,
+                (double) totals.openNanos / totals.opens,
+                (double) totals.queryNanos / totals.queries,
+                totals.trialNanos / 1e6 / totals.trials,
+                (double) totals.allocated / totals.opens);
+    }
+
+    private static int[] permutation(int count, SplittableRandom random) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+        return order;
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = {64, 128, 256, 512, 1024, 2048, 4096, 8192};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("%-8s %6s %10s %10s %12s %10s%n",
+                "backend", "n", "open ns", "isFull ns", "trial ms", "alloc B");
+        for (int n : sizes) {
+            SplittableRandom random = new SplittableRandom(n);
+            int[] order = permutation(n * n, random);
+            int[] queries = new int[Math.min(n * n, 1 << 20)];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = random.nextInt(n * n);
+            }
+            measure("flagged", PercolationBenchmark::flagged, n, order, queries);
+            measure("dual", DualUnionFind::new, n, order, queries);
+            measure("mapped", PercolationBenchmark::mapped, n, order, queries);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+}
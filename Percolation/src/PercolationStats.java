@@ -1,13 +1,53 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
 
 public class PercolationStats {
+    // trials per leaf task; one trial on a large grid is already plenty of work
+    private static final int GRAIN = 4;
+    // fewest trials an adaptive run takes before trusting its variance estimate
+    private static final int MIN_TRIALS = 32;
+
     private final int size;
     private final int trials;
     private final double[] thresholds;
+    private final long[] sortedOpenCounts;
+    private final Moments moments;
 
     // perform independent trials on an n-by-n grid
     public PercolationStats(int n, int trials) {
+        this(n, trials, freshSeed());
+    }
+
+    // a new seed on every call; StdRandom.getSeed() is fixed for the life of the
+    // JVM, so two unseeded runs in one process would repeat each other
+    private static long freshSeed() {
+        return StdRandom.uniformLong(Long.MAX_VALUE);
+    }
+
+    // perform independent trials on an n-by-n grid, reproducible from seed
+    public PercolationStats(int n, int trials, long seed) {
+        this(n, trials, seed, null);
+    }
+
+    // as above, recording completed trials in checkpointFile (none if null); if the
+    // file already holds a run with the same parameters, its trials are reused and
+    // only the missing ones are run
+    public PercolationStats(int n, int trials, long seed, String checkpointFile) {
         if (n <= 0 || trials <= 0) {
             throw new IllegalArgumentException();
         }
@@ -15,26 +55,293 @@ public class PercolationStats {
         this.size = n;
         this.trials = trials;
         this.thresholds = new double[trials];
+        Checkpoint checkpoint = checkpointFile == null
+                ? null : new Checkpoint(checkpointFile, n, trials, seed, thresholds);
+        try {
+            this.moments = ForkJoinPool.commonPool().invoke(
+                    new TrialTask(0, trials, new SplittableRandom(seed), checkpoint));
+        } finally {
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+        }
 
+        long sites = (long) size * size;
+        this.sortedOpenCounts = new long[trials];
         for (int i = 0; i < trials; i++) {
-            Percolation percolation = new Percolation(size);
+            sortedOpenCounts[i] = Math.round(thresholds[i] * sites);
+        }
+        Arrays.sort(sortedOpenCounts);
+    }
+
+    // perform trials until the 95% confidence interval is narrower than
+    // +/- halfWidth; only running moments are kept, so memory does not grow with T
+    private PercolationStats(int n, double halfWidth, long seed) {
+        if (n <= 0 || !(halfWidth > 0)) {
+            throw new IllegalArgumentException();
+        }
+
+        this.size = n;
+        this.thresholds = null;
+        this.sortedOpenCounts = null;
+
+        // each batch is sized from the current variance estimate to what should
+        // reach the target, so the stopping point depends only on the seed
+        SplittableRandom master = new SplittableRandom(seed);
+        Moments total = new Moments();
+        int batch = MIN_TRIALS;
+        while (true) {
+            Moments result = ForkJoinPool.commonPool().invoke(new TrialTask(0, batch, master.split(), null));
+            total = total.merge(result);
+            double spread = 1.96 * total.stddev();
+            if (spread / Math.sqrt(total.count) < halfWidth) {
+                break;
+            }
+            double needed = Math.ceil(spread * spread / (halfWidth * halfWidth));
+            batch = (int) Math.max(GRAIN, Math.min(needed - total.count, Math.max(total.count, MIN_TRIALS)));
+        }
+        this.moments = total;
+        this.trials = total.count;
+    }
+
+    // trials on an n-by-n grid until the 95% confidence interval has half-width below halfWidth
+    public static PercolationStats adaptive(int n, double halfWidth, long seed) {
+        return new PercolationStats(n, halfWidth, seed);
+    }
+
+    // as above, seeded from StdRandom
+    public static PercolationStats adaptive(int n, double halfWidth) {
+        return new PercolationStats(n, halfWidth, freshSeed());
+    }
+
+    // count, mean and sum of squared deviations, updated one value at a time (Welford)
+    private static class Moments {
+        private int count;
+        private double mean;
+        private double m2;
+
+        void add(double x) {
+            count += 1;
+            double delta = x - mean;
+            mean += delta / count;
+            m2 += delta * (x - mean);
+        }
+
+        // combines two disjoint samples (Chan et al.)
+        Moments merge(Moments that) {
+            if (that.count == 0) {
+                return this;
+            }
+            if (count == 0) {
+                return that;
+            }
+            Moments merged = new Moments();
+            merged.count = count + that.count;
+            double delta = that.mean - mean;
+            merged.mean = mean + delta * that.count / merged.count;
+            merged.m2 = m2 + that.m2 + delta * delta * ((double) count * that.count / merged.count);
+            return merged;
+        }
+
+        double stddev() {
+            return Math.sqrt(m2 / (count - 1));
+        }
+    }
+
+    // appends each completed leaf of the trial tree to a file, as a header
+    // (magic, n, trials, seed, grain) followed by records (lo, hi, thresholds[lo..hi));
+    // the tree and its random streams are fixed by the header, so a leaf that
+    // was recorded can be skipped on resume without disturbing the others
+    private static class Checkpoint {
+        private static final int MAGIC = 0x50435431;
+        private static final int HEADER_BYTES = 3 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+        private final FileChannel channel;
+        private final boolean[] done;
+
+        // loads completed leaves into thresholds, or starts a new file
+        Checkpoint(String filename, int n, int trials, long seed, double[] thresholds) {
+            Path path = Paths.get(filename);
+            this.done = new boolean[trials];
+            try {
+                // a file shorter than the header was cut off while the header
+                // was being written, and holds no trials; start it afresh
+                long valid = 0;
+                if (Files.exists(path) && Files.size(path) >= HEADER_BYTES) {
+                    valid = load(path, n, trials, seed, thresholds);
+                }
+                this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                // drop a record torn by a crash mid-write
+                channel.truncate(valid);
+                channel.position(valid);
+                if (valid == 0) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                    header.putInt(MAGIC).putInt(n).putInt(trials).putLong(seed).putInt(GRAIN).flip();
+                    write(header);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not open checkpoint " + filename, e);
+            }
+        }
+
+        // returns the length of the file up to the last complete record
+        private long load(Path path, int n, int trials, long seed, double[] thresholds) throws IOException {
+            try (InputStream file = Files.newInputStream(path);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+                if (in.readInt() != MAGIC || in.readInt() != n || in.readInt() != trials
+                        || in.readLong() != seed || in.readInt() != GRAIN) {
+                    throw new IllegalArgumentException("Checkpoint " + path + " is for a different run");
+                }
+                long valid = HEADER_BYTES;
+                double[] record = new double[GRAIN];
+                while (true) {
+                    try {
+                        int lo = in.readInt();
+                        int hi = in.readInt();
+                        if (lo < 0 || hi > trials || hi <= lo || hi - lo > GRAIN) {
+                            return valid;
+                        }
+                        for (int i = 0; i < hi - lo; i++) {
+                            record[i] = in.readDouble();
+                        }
+                        System.arraycopy(record, 0, thresholds, lo, hi - lo);
+                        for (int i = lo; i < hi; i++) {
+                            done[i] = true;
+                        }
+                        valid += 2 * Integer.BYTES + (long) (hi - lo) * Double.BYTES;
+                    } catch (EOFException e) {
+                        return valid;
+                    }
+                }
+            }
+        }
+
+        boolean isDone(int lo) {
+            return done[lo];
+        }
+
+        // one write per leaf; a JVM crash loses at most the leaves still running
+        synchronized void append(int lo, int hi, double[] thresholds) {
+            ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + (hi - lo) * Double.BYTES);
+            record.putInt(lo).putInt(hi);
+            for (int i = lo; i < hi; i++) {
+                record.putDouble(thresholds[i]);
+            }
+            record.flip();
+            try {
+                write(record);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not write checkpoint", e);
+            }
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not close checkpoint", e);
+            }
+        }
+    }
+
+    // runs trials [lo, hi); the split tree depends only on the range, so the
+    // stream each trial sees is fixed by the master seed, not by scheduling
+    private class TrialTask extends RecursiveTask<Moments> {
+        private static final long serialVersionUID = 1L;
+        private final int lo;
+        private final int hi;
+        private final SplittableRandom random;
+        private final Checkpoint checkpoint;
+
+        TrialTask(int lo, int hi, SplittableRandom random, Checkpoint checkpoint) {
+            this.lo = lo;
+            this.hi = hi;
+            this.random = random;
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        protected Moments compute() {
+            if (hi - lo <= GRAIN && checkpoint != null && checkpoint.isDone(lo)) {
+                Moments result = new Moments();
+                for (int i = lo; i < hi; i++) {
+                    result.add(thresholds[i]);
+                }
+                return result;
+            }
+            if (hi - lo <= GRAIN) {
+                int[] sites = null;
+                if (size <= Percolation.MAX_LENGTH) {
+                    sites = new int[size * size];
+                    for (int i = 0; i < sites.length; i++) {
+                        sites[i] = i;
+                    }
+                }
+                Moments result = new Moments();
+                for (int i = lo; i < hi; i++) {
+                    double threshold = sites != null ? runTrial(random, sites) : runLargeTrial(random);
+                    if (thresholds != null) {
+                        thresholds[i] = threshold;
+                    }
+                    result.add(threshold);
+                }
+                if (checkpoint != null) {
+                    checkpoint.append(lo, hi, thresholds);
+                }
+                return result;
+            }
+            int mid = (lo + hi) >>> 1;
+            TrialTask left = new TrialTask(lo, mid, random.split(), checkpoint);
+            TrialTask right = new TrialTask(mid, hi, random, checkpoint);
+            invokeAll(left, right);
+            return left.join().merge(right.join());
+        }
+    }
+
+    // opens sites in a random order drawn one Fisher-Yates step at a time, so
+    // no draw is wasted on an open site; sites only needs to hold a permutation
+    // of all sites, and is left holding another one for the next trial
+    private double runTrial(SplittableRandom random, int[] sites) {
+        Percolation percolation = new Percolation(size);
+        int opened = 0;
+        while (!percolation.percolates()) {
+            int pick = opened + random.nextInt(sites.length - opened);
+            int site = sites[pick];
+            sites[pick] = sites[opened];
+            sites[opened] = site;
+            opened += 1;
+            percolation.open(site / size + 1, site % size + 1);
+        }
+        return (double) percolation.numberOfOpenSites() / sites.length;
+    }
+
+    // grids past int indexing run off-heap; a permutation of all sites would not
+    // fit in an array, so sites are drawn by rejection instead
+    private double runLargeTrial(SplittableRandom random) {
+        try (LargePercolation percolation = new LargePercolation(size)) {
             while (!percolation.percolates()) {
-                int row = StdRandom.uniformInt(size) + 1;
-                int col = StdRandom.uniformInt(size) + 1;
+                int row = random.nextInt(size) + 1;
+                int col = random.nextInt(size) + 1;
                 percolation.open(row, col);
             }
-            thresholds[i] = (double) percolation.numberOfOpenSites() / (size * size);
+            return (double) percolation.numberOfOpenSites() / ((long) size * size);
         }
     }
 
     // sample mean of percolation threshold
     public double mean() {
-        return StdStats.mean(thresholds);
+        return moments.mean;
     }
 
     // sample standard deviation of percolation threshold
     public double stddev() {
-        return StdStats.stddev(thresholds);
+        return moments.stddev();
     }
 
     // low endpoint of 95% confidence interval
@@ -47,18 +354,89 @@ public class PercolationStats {
         return mean() + 1.96 * stddev() / Math.sqrt(trials);
     }
 
+    // number of trials performed
+    public int trials() {
+        return trials;
+    }
+
+    // estimated probability that a grid with each site open with probability p
+    // percolates; the per-trial step curves are averaged into P(k open sites
+    // percolate) and convolved with the binomial distribution of k (Newman-Ziff)
+    public double percolationProbability(double p) {
+        if (Double.isNaN(p) || p < 0 || p > 1) {
+            throw new IllegalArgumentException("p must be in [0, 1]");
+        }
+        if (sortedOpenCounts == null) {
+            throw new IllegalStateException("Adaptive runs do not keep per-trial results");
+        }
+        long sites = (long) size * size;
+        if (p == 0) {
+            return fractionPercolatedBy(0);
+        }
+        if (p == 1) {
+            return fractionPercolatedBy(sites);
+        }
+
+        // binomial weights relative to the mode, walking outwards until negligible
+        long mode = (long) Math.min(sites, Math.floor((sites + 1) * p));
+        double ratio = p / (1 - p);
+        double total = 1;
+        double sum = fractionPercolatedBy(mode);
+        double weight = 1;
+        for (long k = mode; k < sites && weight > 1e-17 * total; k++) {
+            weight *= ratio * (sites - k) / (k + 1);
+            total += weight;
+            sum += weight * fractionPercolatedBy(k + 1);
+        }
+        weight = 1;
+        for (long k = mode; k > 0 && weight > 1e-17 * total; k--) {
+            weight *= k / (ratio * (sites - k + 1));
+            total += weight;
+            sum += weight * fractionPercolatedBy(k - 1);
+        }
+        return sum / total;
+    }
+
+    // fraction of trials that percolated with at most k open sites
+    private double fractionPercolatedBy(long k) {
+        int lo = 0;
+        int hi = trials;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedOpenCounts[mid] <= k) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return (double) lo / trials;
+    }
+
     // test client
     public static void main(String[] args) {
-        if (args.length != 2) {
-            System.out.println("Usage: java-algs4 PercolationStats n T");
+        if (args.length < 2 || args.length > 4) {
+            System.out.println("Usage: java-algs4 PercolationStats n T [seed [checkpoint-file]]");
+            System.out.println("       java-algs4 PercolationStats n half-width [seed]   (half-width < 1)");
             return;
         }
         int n = Integer.parseInt(args[0]);
-        int trial = Integer.parseInt(args[1]);
-        PercolationStats stats = new PercolationStats(n, trial);
+        double target = Double.parseDouble(args[1]);
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : freshSeed();
+        String checkpoint = args.length == 4 ? args[3] : null;
+        boolean adaptive = target < 1;
+        PercolationStats stats = adaptive
+                ? PercolationStats.adaptive(n, target, seed)
+                : new PercolationStats(n, (int) target, seed, checkpoint);
+        System.out.println("trials                  = " + stats.trials());
         System.out.println("mean                    = " + stats.mean());
         System.out.println("stddev                  = " + stats.stddev());
         System.out.println("95% confidence interval = [" + stats.confidenceLo()
                 + ", " + stats.confidenceHi() + "]");
+        if (adaptive) {
+            return;
+        }
+        for (double p = 0.55; p < 0.64; p += 0.01) {
+            System.out.printf("P(percolates | p = %.2f)  = %.4f%n", p, stats.percolationProbability(p));
+        }
     }
 }
@@ -32,11 +32,14 @@ public class PercolationVisualizer {
         StdDraw.filledSquare(N / 2.0, N / 2.0, N / 2.0);
 
         // draw N-by-N grid
+        byte[] states = new byte[N * N];
+        perc.snapshot(states);
         for (int row = 1; row <= N; row++) {
             for (int col = 1; col <= N; col++) {
-                if (perc.isFull(row, col)) {
+                byte state = states[(row - 1) * N + (col - 1)];
+                if (state == Percolation.FULL) {
                     StdDraw.setPenColor(StdDraw.BOOK_LIGHT_BLUE);
-                } else if (perc.isOpen(row, col)) {
+                } else if (state == Percolation.OPEN) {
                     StdDraw.setPenColor(StdDraw.WHITE);
                 } else {
                     StdDraw.setPenColor(StdDraw.BLACK);